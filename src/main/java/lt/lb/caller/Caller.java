@@ -1,14 +1,25 @@
 package lt.lb.caller;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import lt.lb.caller.CallerImpl.StackFrame;
 import lt.lb.caller.util.CastList;
+import lt.lb.caller.util.CheckedBiFunction;
 import lt.lb.caller.util.CheckedFunction;
 import lt.lb.caller.util.CheckedRunnable;
+import lt.lb.caller.util.SerializableCallable;
 
 /**
  * Recursion avoiding function modeling. Main purpose: write a recursive
@@ -29,11 +40,16 @@ import lt.lb.caller.util.CheckedRunnable;
  * are self-evident. Is not likely to be faster than well-made iterative
  * solution.
  *
+ * Serializable (so that resolution can be checkpointed, see
+ * {@link CallerCheckpoint}) as long as provided functions and values are.
+ *
  * @author laim0nas100
  * @param <T> Most general type of return result (and arguments) that this
  * caller is used to model.
  */
-public class Caller<T> {
+public class Caller<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     /**
      * What to put if stack limit is disabled
@@ -63,8 +79,14 @@ public class Caller<T> {
      * Memoized things. This actually stores a value and a caller object, but
      * the value is stored as a result of a future.
      */
-    protected final CompletableFuture<T> compl;
+    protected transient CompletableFuture<T> compl;
     protected final AtomicBoolean started;
+    /**
+     * Who computes memoized value and what it waits for, recorded only when it
+     * blocks, or other memoized caller, which it waits for. Used for cycle
+     * detection.
+     */
+    protected transient volatile Object owner;
 
     public static <T> CallerBuilder<T> builder() {
         return new CallerBuilder<>();
@@ -82,6 +104,10 @@ public class Caller<T> {
         return new CallerForBuilderBulk<>();
     }
 
+    public static <T> CallerForRangeBuilder<T> builderForRange() {
+        return new CallerForRangeBuilder<>();
+    }
+
     public static <T> CallerWhileBuilder<T> builderWhile() {
         return new CallerWhileBuilder<>();
     }
@@ -189,6 +215,129 @@ public class Caller<T> {
         return new Caller<>(CallerType.MEMOIZING, null, call, null);
     }
 
+    /**
+     * Memoized caller, which releases its value after given amount of
+     * consumers took it (including the first one, which computed it), so that
+     * memoized results do not outlive their use. Any further consumer fails
+     * with {@link CallerException}.
+     *
+     * @param <T>
+     * @param call computation of the value
+     * @param consumers how many times value is taken
+     * @return Caller, with memoized value
+     */
+    public static <T> Caller<T> ofMemoCounted(Caller<T> call, int consumers) {
+        Objects.requireNonNull(call);
+        if (consumers <= 0) {
+            throw new IllegalArgumentException("Consumers must be positive, got " + consumers);
+        }
+        return new CallerImpl.CountedMemoCaller<>(call, consumers);
+    }
+
+    /**
+     * Memoized caller, which holds its value through a
+     * {@link java.lang.ref.SoftReference}, so it can be collected under memory
+     * pressure. Collected value is computed again (once) by the next consumer,
+     * so computation must be repeatable.
+     *
+     * @param <T>
+     * @param call computation of the value
+     * @return Caller, with memoized value
+     */
+    public static <T> Caller<T> ofMemoSoft(Caller<T> call) {
+        Objects.requireNonNull(call);
+        return new CallerImpl.SoftMemoCaller<>(call);
+    }
+
+    /**
+     * Leaf caller with a value of given future. While future is pending,
+     * other dependencies of the same caller are resolved. Asynchronous
+     * resolution (see {@link CallerResolve#resolveAsync}) is suspended instead
+     * of waiting, otherwise thread waits only when the value is needed.
+     *
+     * @param <T>
+     * @param future
+     * @return Caller, that ends up as a result
+     */
+    public static <T> Caller<T> ofFuture(CompletableFuture<T> future) {
+        Objects.requireNonNull(future);
+        return new CallerImpl.AsyncCaller<>(() -> future);
+    }
+
+    /**
+     * Leaf caller with a value of a future, which is supplied each time this
+     * caller is resolved. While future is pending, other dependencies of the
+     * same caller are resolved. Asynchronous resolution (see
+     * {@link CallerResolve#resolveAsync}) is suspended instead of waiting,
+     * otherwise thread waits only when the value is needed.
+     *
+     * @param <T>
+     * @param supplier
+     * @return Caller, that ends up as a result
+     */
+    public static <T> Caller<T> ofAsync(Supplier<CompletableFuture<T>> supplier) {
+        Objects.requireNonNull(supplier);
+        return new CallerImpl.AsyncCaller<>(supplier);
+    }
+
+    /**
+     * Batching source of keyed leaf callers (see {@link CallerBatch}). Keys
+     * reached during resolution are loaded together with a single call of
+     * given batch function.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @param batch loads values of every given key
+     * @return
+     */
+    public static <K, V> CallerBatch<K, V> ofBatch(CheckedFunction<Collection<K>, Map<K, V>> batch) {
+        return new CallerBatch<>(batch);
+    }
+
+    /**
+     * Mutable input of incremental recomputation (see {@link CallerNode}).
+     *
+     * @param <T>
+     * @param value initial value
+     * @return Caller, that resolves to current value of the cell
+     */
+    public static <T> CallerCell<T> ofCell(T value) {
+        return new CallerCell<>(value);
+    }
+
+    /**
+     * Caller modeling a recursive call identified by a key. During resolution,
+     * every keyed caller with equal key is replaced by a single memoized
+     * caller from {@link CallerInterner} of that resolution, so equal
+     * subproblems are computed only once.
+     *
+     * @param <T>
+     * @param key immutable key with proper {@code equals} and
+     * {@code hashCode}
+     * @param call
+     * @return Caller, with recursive call
+     */
+    public static <T> Caller<T> ofKeyed(Object key, Callable<Caller<T>> call) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(call);
+        return new CallerImpl.KeyedCaller<>(key, call);
+    }
+
+    /**
+     * Same as {@link #ofKeyed(Object, Callable)}, but lambdas are
+     * serializable, so that keyed callers and keyed caller table can be
+     * checkpointed (see {@link CallerCheckpoint}).
+     *
+     * @param <T>
+     * @param key immutable key with proper {@code equals} and
+     * {@code hashCode}
+     * @param call
+     * @return Caller, with recursive call
+     */
+    public static <T> Caller<T> ofKeyed(Object key, SerializableCallable<Caller<T>> call) {
+        return ofKeyed(key, (Callable<Caller<T>>) call);
+    }
+
     /**
      * Caller modeling a recursive call with no result or arguments.
      *
@@ -198,10 +347,10 @@ public class Caller<T> {
      */
     public static <T> Caller<T> ofRunnable(CheckedRunnable run) {
         Objects.requireNonNull(run);
-        return ofFunction(args -> {
+        return ofFunction(CallerImpl.serializable(args -> {
             run.run();
             return Caller.ofNull();
-        });
+        }));
     }
 
     /**
@@ -214,10 +363,10 @@ public class Caller<T> {
      */
     public static <T> Caller<T> ofRunnableMemo(CheckedRunnable run) {
         Objects.requireNonNull(run);
-        return ofFunctionMemo(args -> {
+        return ofFunctionMemo(CallerImpl.serializable(args -> {
             run.run();
             return Caller.ofNull();
-        });
+        }));
     }
 
     /**
@@ -229,7 +378,7 @@ public class Caller<T> {
      */
     public static <T> Caller<T> ofCallable(Callable<Caller<T>> call) {
         Objects.requireNonNull(call);
-        return ofFunction(args -> call.call());
+        return ofFunction(CallerImpl.serializable(args -> call.call()));
     }
 
     /**
@@ -242,7 +391,7 @@ public class Caller<T> {
      */
     public static <T> Caller<T> ofCallableMemo(Callable<Caller<T>> call) {
         Objects.requireNonNull(call);
-        return ofFunctionMemo(args -> call.call());
+        return ofFunctionMemo(CallerImpl.serializable(args -> call.call()));
     }
 
     /**
@@ -254,7 +403,7 @@ public class Caller<T> {
      */
     public static <T> Caller<T> ofCallableResult(Callable<T> call) {
         Objects.requireNonNull(call);
-        return ofFunction(args -> ofResult(call.call()));
+        return ofFunction(CallerImpl.serializable(args -> ofResult(call.call())));
     }
 
     /**
@@ -267,7 +416,7 @@ public class Caller<T> {
      */
     public static <T> Caller<T> ofCallableResultMemo(Callable<T> call) {
         Objects.requireNonNull(call);
-        return ofFunctionMemo(args -> ofResult(call.call()));
+        return ofFunctionMemo(CallerImpl.serializable(args -> ofResult(call.call())));
     }
 
     /**
@@ -279,7 +428,7 @@ public class Caller<T> {
      */
     public static <T> Caller<T> ofResultCall(CheckedFunction<CastList<T>, T> call) {
         Objects.requireNonNull(call);
-        return ofFunction(args -> ofResult(call.apply(args)));
+        return ofFunction(CallerImpl.serializable(args -> ofResult(call.apply(args))));
     }
 
     /**
@@ -292,7 +441,131 @@ public class Caller<T> {
      */
     public static <T> Caller<T> ofResultCallMemo(CheckedFunction<CastList<T>, T> call) {
         Objects.requireNonNull(call);
-        return ofFunctionMemo(args -> ofResult(call.apply(args)));
+        return ofFunctionMemo(CallerImpl.serializable(args -> ofResult(call.apply(args))));
+    }
+
+    /**
+     * Caller modeling a recursive call with exactly 1 dependency. Dependency
+     * result is stored directly, without any argument list.
+     *
+     * @param <T>
+     * @param dep dependency
+     * @param call function of dependency result
+     * @return Caller, with recursive call
+     */
+    public static <T> Caller<T> ofUnary(Caller<T> dep, CheckedFunction<T, Caller<T>> call) {
+        Objects.requireNonNull(dep);
+        Objects.requireNonNull(call);
+        return new CallerImpl.UnaryCaller<>(CallerType.FUNCTION, dep, call);
+    }
+
+    /**
+     * Caller modeling a recursive call with exactly 1 dependency. Dependency
+     * result is stored directly, without any argument list. Memoized (runs
+     * only once and stores result).
+     *
+     * @param <T>
+     * @param dep dependency
+     * @param call function of dependency result
+     * @return Caller, with recursive call
+     */
+    public static <T> Caller<T> ofUnaryMemo(Caller<T> dep, CheckedFunction<T, Caller<T>> call) {
+        Objects.requireNonNull(dep);
+        Objects.requireNonNull(call);
+        return new CallerImpl.UnaryCaller<>(CallerType.MEMOIZING, dep, call);
+    }
+
+    /**
+     * Caller that has a result (terminating) after calling a function of
+     * exactly 1 dependency.
+     *
+     * @param <T>
+     * @param dep dependency
+     * @param call function of dependency result
+     * @return Caller that ends up as a result
+     */
+    public static <T> Caller<T> ofUnaryResult(Caller<T> dep, CheckedFunction<T, T> call) {
+        Objects.requireNonNull(call);
+        return ofUnary(dep, CallerImpl.serializable(a -> ofResult(call.apply(a))));
+    }
+
+    /**
+     * Caller that has a result (terminating) after calling a function of
+     * exactly 1 dependency. Memoized (runs only once and stores result).
+     *
+     * @param <T>
+     * @param dep dependency
+     * @param call function of dependency result
+     * @return Caller that ends up as a result
+     */
+    public static <T> Caller<T> ofUnaryResultMemo(Caller<T> dep, CheckedFunction<T, T> call) {
+        Objects.requireNonNull(call);
+        return ofUnaryMemo(dep, CallerImpl.serializable(a -> ofResult(call.apply(a))));
+    }
+
+    /**
+     * Caller modeling a recursive call with exactly 2 dependencies. Dependency
+     * results are stored directly, without any argument list.
+     *
+     * @param <T>
+     * @param dep0 first dependency
+     * @param dep1 second dependency
+     * @param call function of both dependency results
+     * @return Caller, with recursive call
+     */
+    public static <T> Caller<T> ofBinary(Caller<T> dep0, Caller<T> dep1, CheckedBiFunction<T, T, Caller<T>> call) {
+        Objects.requireNonNull(dep0);
+        Objects.requireNonNull(dep1);
+        Objects.requireNonNull(call);
+        return new CallerImpl.BinaryCaller<>(CallerType.FUNCTION, dep0, dep1, call);
+    }
+
+    /**
+     * Caller modeling a recursive call with exactly 2 dependencies. Dependency
+     * results are stored directly, without any argument list. Memoized (runs
+     * only once and stores result).
+     *
+     * @param <T>
+     * @param dep0 first dependency
+     * @param dep1 second dependency
+     * @param call function of both dependency results
+     * @return Caller, with recursive call
+     */
+    public static <T> Caller<T> ofBinaryMemo(Caller<T> dep0, Caller<T> dep1, CheckedBiFunction<T, T, Caller<T>> call) {
+        Objects.requireNonNull(dep0);
+        Objects.requireNonNull(dep1);
+        Objects.requireNonNull(call);
+        return new CallerImpl.BinaryCaller<>(CallerType.MEMOIZING, dep0, dep1, call);
+    }
+
+    /**
+     * Caller that has a result (terminating) after calling a function of
+     * exactly 2 dependencies.
+     *
+     * @param <T>
+     * @param dep0 first dependency
+     * @param dep1 second dependency
+     * @param call function of both dependency results
+     * @return Caller that ends up as a result
+     */
+    public static <T> Caller<T> ofBinaryResult(Caller<T> dep0, Caller<T> dep1, CheckedBiFunction<T, T, T> call) {
+        Objects.requireNonNull(call);
+        return ofBinary(dep0, dep1, CallerImpl.serializable((a, b) -> ofResult(call.apply(a, b))));
+    }
+
+    /**
+     * Caller that has a result (terminating) after calling a function of
+     * exactly 2 dependencies. Memoized (runs only once and stores result).
+     *
+     * @param <T>
+     * @param dep0 first dependency
+     * @param dep1 second dependency
+     * @param call function of both dependency results
+     * @return Caller that ends up as a result
+     */
+    public static <T> Caller<T> ofBinaryResultMemo(Caller<T> dep0, Caller<T> dep1, CheckedBiFunction<T, T, T> call) {
+        Objects.requireNonNull(call);
+        return ofBinaryMemo(dep0, dep1, CallerImpl.serializable((a, b) -> ofResult(call.apply(a, b))));
     }
 
     /**
@@ -317,6 +590,166 @@ public class Caller<T> {
         }
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        if (type == CallerType.MEMOIZING) {
+            boolean done = compl.isDone() && !compl.isCompletedExceptionally();
+            out.writeBoolean(done);
+            if (done) {
+                out.writeObject(compl.join());
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        if (in instanceof CallerCheckpoint.CheckpointInput) {
+            ((CallerCheckpoint.CheckpointInput) in).read.add(this);
+        }
+        in.defaultReadObject();
+        if (type == CallerType.MEMOIZING) {
+            compl = new CompletableFuture<>();
+            if (in.readBoolean()) {
+                compl.complete((T) in.readObject());
+            }
+        }
+    }
+
+    private Object readResolve() {
+        if (type == CallerType.RESULT && value == null) {
+            return emptyResultCaller;
+        }
+        return this;
+    }
+
+    /**
+     * @return whether there are dependencies to resolve before the call
+     */
+    boolean hasDependencies() {
+        return dependencies != null;
+    }
+
+    /**
+     * @return amount of dependencies known before resolving (used for
+     * forking)
+     */
+    int dependencyCount() {
+        return dependencies == null ? 0 : dependencies.size();
+    }
+
+    /**
+     * @param index
+     * @return dependency at given index
+     */
+    Caller<T> dependency(int index) {
+        return dependencies.get(index);
+    }
+
+    /**
+     * @return associative combiner of dependency results, if they can be
+     * combined pairwise in parallel, otherwise {@code null}
+     */
+    CheckedBiFunction<T, T, T> associativeCombiner() {
+        return null;
+    }
+
+    /**
+     * Prepare frame to collect the arguments of this caller.
+     *
+     * @param frame
+     */
+    void prepare(StackFrame<T> frame) {
+        frame.args = dependencies == null ? null : new ArrayList<>(dependencies.size());
+    }
+
+    /**
+     * @param frame
+     * @return next dependency to resolve or {@code null} if every dependency
+     * was resolved
+     */
+    Caller<T> nextDependency(StackFrame<T> frame) {
+        if (dependencies == null || frame.index >= dependencies.size()) {
+            return null;
+        }
+        return dependencies.get(frame.index++);
+    }
+
+    /**
+     * Collect resolved dependency value.
+     *
+     * @param frame
+     * @param position dependency position
+     * @param arg resolved value
+     */
+    void accept(StackFrame<T> frame, int position, T arg) {
+        frame.args.add(arg);
+    }
+
+    /**
+     * Call with collected arguments.
+     *
+     * @param frame
+     * @return next caller
+     */
+    Caller<T> invoke(StackFrame<T> frame) {
+        return call.apply(frame.args == null ? CallerImpl.emptyArgs : new CastList<>(frame.args));
+    }
+
+    /**
+     * @return whether dependency results can be accepted after later ones
+     * are resolved (in order), so pending asynchronous dependencies do not
+     * stop resolution of the rest
+     */
+    boolean deferrable() {
+        return true;
+    }
+
+    /**
+     * @param frame
+     * @return future, which must complete before the call, or {@code null}
+     */
+    CompletableFuture<?> pending(StackFrame<T> frame) {
+        return frame.deferred == null ? null : frame.deferred.pending();
+    }
+
+    /**
+     * Copy of this caller with its own dependency storage, so that lean
+     * resolution can release consumed dependencies without changing this
+     * caller, which may be shared or resolved again.
+     *
+     * @return copy or {@code null} if dependencies are kept (memoized
+     * callers, subclasses, which don't copy themselves, no dependencies)
+     */
+    Caller<T> leanCopy() {
+        if (getClass() != Caller.class || type != CallerType.FUNCTION || dependencies == null) {
+            return null;
+        }
+        return new Caller<>(type, null, (CheckedFunction<CastList<T>, Caller<T>>) call, new ArrayList<>(dependencies));
+    }
+
+    /**
+     * Drop reference to dependency, which was just returned by
+     * {@link #nextDependency}. Only called on a {@link #leanCopy}.
+     *
+     * @param frame
+     */
+    void releaseConsumed(StackFrame<T> frame) {
+        if (dependencies != null) {
+            dependencies.set(frame.index - 1, null);
+        }
+    }
+
+    /**
+     * Drop references to every dependency, after they were forked. Only
+     * called on a {@link #leanCopy}.
+     */
+    void releaseDependencies() {
+        if (dependencies != null) {
+            for (int i = 0; i < dependencies.size(); i++) {
+                dependencies.set(i, null);
+            }
+        }
+    }
+
     /**
      * Construct {@link Caller} loop end with {@code return} from this caller.
      *
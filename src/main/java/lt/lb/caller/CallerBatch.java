@@ -0,0 +1,128 @@
+package lt.lb.caller;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import lt.lb.caller.util.CheckedFunction;
+
+/**
+ * Batching source of keyed leaf callers. Keys of every leaf, which is reached
+ * while resolving, are queued and loaded with a single call of batch function
+ * once some caller actually needs a value.
+ *
+ * Frames waiting for batched values are parked in their parent frames, so
+ * sibling dependencies are expanded and queue their keys too. Only when no
+ * frame can be expanded further, batch is dispatched and parked frames are
+ * resumed. Forked branches share the same queue, so keys queued by other
+ * threads are loaded together.
+ *
+ * Same key within a batch is loaded once. Values are not cached between
+ * batches, use memoized callers for that.
+ *
+ * @author laim0nas100
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class CallerBatch<K, V> {
+
+    protected final CheckedFunction<Collection<K>, Map<K, V>> batch;
+    private LinkedHashMap<K, BatchFuture<V>> queue = new LinkedHashMap<>();
+
+    CallerBatch(CheckedFunction<Collection<K>, Map<K, V>> batch) {
+        this.batch = Objects.requireNonNull(batch);
+    }
+
+    /**
+     * @param key
+     * @return Caller, that ends up as a value of given key
+     */
+    public Caller<V> get(K key) {
+        return new CallerImpl.AsyncCaller<>(() -> load(key));
+    }
+
+    synchronized BatchFuture<V> load(K key) {
+        return queue.computeIfAbsent(key, k -> new BatchFuture<>(this));
+    }
+
+    /**
+     * Load every queued key with one call of batch function. Keys missing in
+     * the returned map fail with {@link CallerException}.
+     */
+    public void dispatch() {
+        LinkedHashMap<K, BatchFuture<V>> window;
+        synchronized (this) {
+            if (queue.isEmpty()) {
+                return;
+            }
+            window = queue;
+            queue = new LinkedHashMap<>();
+            for (BatchFuture<V> future : window.values()) {
+                future.queued = false;
+            }
+        }
+        Map<K, V> values;
+        try {
+            values = batch.applyUncheked(Collections.unmodifiableSet(window.keySet()));
+        } catch (Throwable t) {
+            for (BatchFuture<V> future : window.values()) {
+                future.completeExceptionally(t);
+            }
+            return;
+        }
+        for (Map.Entry<K, BatchFuture<V>> entry : window.entrySet()) {
+            if (values != null && values.containsKey(entry.getKey())) {
+                entry.getValue().complete(values.get(entry.getKey()));
+            } else {
+                entry.getValue().completeExceptionally(new CallerException("Batch has no value for key " + entry.getKey()));
+            }
+        }
+    }
+
+    /**
+     * Dispatch batch of given future if it is still queued.
+     *
+     * @param future
+     */
+    static void dispatch(CompletableFuture<?> future) {
+        if (isQueued(future)) {
+            ((BatchFuture<?>) future).batch.dispatch();
+        }
+    }
+
+    static boolean isQueued(CompletableFuture<?> future) {
+        return future instanceof BatchFuture && ((BatchFuture) future).queued;
+    }
+
+    /**
+     * Future of a queued key. Waiting dispatches the batch.
+     *
+     * @param <V>
+     */
+    static class BatchFuture<V> extends CompletableFuture<V> {
+
+        final CallerBatch<?, V> batch;
+        volatile boolean queued = true;
+
+        BatchFuture(CallerBatch<?, V> batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public V join() {
+            dispatch(this);
+            return super.join();
+        }
+
+        @Override
+        public V get() throws InterruptedException, ExecutionException {
+            dispatch(this);
+            return super.get();
+        }
+
+    }
+
+}
@@ -2,11 +2,15 @@ package lt.lb.caller;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.Callable;
 import lt.lb.caller.util.CastList;
+import lt.lb.caller.util.CheckedBiFunction;
 import lt.lb.caller.util.CheckedFunction;
+import lt.lb.caller.util.CheckedIntFunction;
 import lt.lb.caller.util.CheckedRunnable;
 
 /**
@@ -31,8 +35,18 @@ public class CallerBuilder<T> {
     }
 
     protected List<Caller<T>> dependants;
+    protected int generatedCount;
+    protected CheckedIntFunction<Caller<T>> generator;
+    protected boolean shareDuplicates;
+
+    private void assertNotGenerated() {
+        if (generator != null) {
+            throw new IllegalStateException("Generated dependencies can not be combined with other dependencies");
+        }
+    }
 
     public CallerBuilder<T> with(Caller<T>... deps) {
+        assertNotGenerated();
         if (dependants == null) {
             dependants = new ArrayList<>(deps.length);
         }
@@ -43,6 +57,7 @@ public class CallerBuilder<T> {
     }
 
     public CallerBuilder<T> with(Collection<Caller<T>> deps) {
+        assertNotGenerated();
         if (dependants == null) {
             dependants = new ArrayList<>(deps.size());
         }
@@ -50,6 +65,68 @@ public class CallerBuilder<T> {
         return this;
     }
 
+    /**
+     * Dependencies, that are generated by index one at a time, only when
+     * resolver needs them, so only the currently active dependency exists when
+     * resolving in a single thread. When dependencies are forked, all of them
+     * are generated at once. Can not be combined with other dependencies.
+     *
+     * @param count amount of dependencies
+     * @param generator dependency of given index
+     * @return builder
+     */
+    public CallerBuilder<T> withGenerated(int count, CheckedIntFunction<Caller<T>> generator) {
+        Objects.requireNonNull(generator);
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative dependency count " + count);
+        }
+        if (dependants != null && !dependants.isEmpty()) {
+            throw new IllegalStateException("Generated dependencies can not be combined with other dependencies");
+        }
+        assertNotGenerated();
+        this.generatedCount = count;
+        this.generator = generator;
+        return this;
+    }
+
+    /**
+     * Resolve every dependency, that occurs more than once (same instance),
+     * only once. Such dependencies are wrapped into a single memoized caller,
+     * so the shared result is kept, as with any memoized caller. Keyed
+     * dependencies (see {@link Caller#ofKeyed}) are shared regardless.
+     *
+     * @return builder
+     */
+    public CallerBuilder<T> shareDuplicates() {
+        this.shareDuplicates = true;
+        return this;
+    }
+
+    /**
+     * @return dependencies with duplicates shared, if it is enabled
+     */
+    protected List<Caller<T>> dependencies() {
+        if (!shareDuplicates || dependants == null) {
+            return dependants;
+        }
+        IdentityHashMap<Caller<T>, Caller<T>> seen = new IdentityHashMap<>();
+        for (Caller<T> dep : dependants) {
+            if (dep.type != Caller.CallerType.FUNCTION) {
+                continue;
+            }
+            if (seen.containsKey(dep)) {
+                seen.put(dep, Caller.ofUnaryMemo(dep, CallerImpl.serializable(Caller::ofResult)));
+            } else {
+                seen.put(dep, dep);
+            }
+        }
+        List<Caller<T>> deps = new ArrayList<>(dependants.size());
+        for (Caller<T> dep : dependants) {
+            deps.add(seen.getOrDefault(dep, dep));
+        }
+        return deps;
+    }
+
     public CallerBuilder<T> with(CheckedFunction<CastList<T>, Caller<T>> call) {
         Objects.requireNonNull(call);
         return with(Caller.ofFunction(call));
@@ -81,51 +158,300 @@ public class CallerBuilder<T> {
 
     public Caller<T> toResultCall(CheckedFunction<CastList<T>, T> call) {
         Objects.requireNonNull(call);
-        return toCall(args -> Caller.ofResult(call.apply(args)));
+        return toCall(CallerImpl.serializable(args -> Caller.ofResult(call.apply(args))));
     }
 
     public Caller<T> toResultCallMemo(CheckedFunction<CastList<T>, T> call) {
         Objects.requireNonNull(call);
-        return toCallMemo(args -> Caller.ofResult(call.apply(args)));
+        return toCallMemo(CallerImpl.serializable(args -> Caller.ofResult(call.apply(args))));
     }
 
     public Caller<T> toResultCall(Callable<T> call) {
         Objects.requireNonNull(call);
-        return toCall(args -> Caller.ofResult(call.call()));
+        return toCall(CallerImpl.serializable(args -> Caller.ofResult(call.call())));
     }
 
     public Caller<T> toResultCallMemo(Callable<T> call) {
         Objects.requireNonNull(call);
-        return toCallMemo(args -> Caller.ofResult(call.call()));
+        return toCallMemo(CallerImpl.serializable(args -> Caller.ofResult(call.call())));
     }
 
     public Caller<T> toCall(CheckedFunction<CastList<T>, Caller<T>> call) {
         Objects.requireNonNull(call);
-        return new Caller<>(Caller.CallerType.FUNCTION, null, call, this.dependants);
+        if (generator != null) {
+            return new CallerImpl.GeneratedCaller<>(Caller.CallerType.FUNCTION, generatedCount, generator, call);
+        }
+        return new Caller<>(Caller.CallerType.FUNCTION, null, call, dependencies());
     }
 
     public Caller<T> toCallMemo(CheckedFunction<CastList<T>, Caller<T>> call) {
         Objects.requireNonNull(call);
-        return new Caller<>(Caller.CallerType.MEMOIZING, null, call, this.dependants);
+        if (generator != null) {
+            return new CallerImpl.GeneratedCaller<>(Caller.CallerType.MEMOIZING, generatedCount, generator, call);
+        }
+        return new Caller<>(Caller.CallerType.MEMOIZING, null, call, dependencies());
+    }
+
+    /**
+     * Memoized caller for incremental recomputation, which can be invalidated
+     * together with its dependents (see {@link CallerNode}).
+     *
+     * @param call
+     * @return
+     */
+    public CallerNode<T> toNode(CheckedFunction<CastList<T>, Caller<T>> call) {
+        Objects.requireNonNull(call);
+        assertNotGenerated();
+        return new CallerNode<>(call, dependants == null ? null : new ArrayList<>(dependants));
+    }
+
+    /**
+     * Memoized caller with a result for incremental recomputation, which can
+     * be invalidated together with its dependents (see {@link CallerNode}).
+     *
+     * @param call
+     * @return
+     */
+    public CallerNode<T> toNodeResult(CheckedFunction<CastList<T>, T> call) {
+        Objects.requireNonNull(call);
+        return toNode(CallerImpl.serializable(args -> Caller.ofResult(call.apply(args))));
+    }
+
+    private Caller<T> toLazy(Caller.CallerType type, CheckedFunction<CastList<Caller<T>>, Caller<T>> call) {
+        Objects.requireNonNull(call);
+        int count;
+        CheckedIntFunction<Caller<T>> source;
+        if (generator != null) {
+            count = generatedCount;
+            source = generator;
+        } else {
+            List<Caller<T>> deps = dependants == null ? new ArrayList<>() : new ArrayList<>(dependencies());
+            count = deps.size();
+            source = deps::get;
+        }
+        CheckedFunction<CastList<T>, Caller<T>> lazy = CallerImpl.serializable(args -> {
+            // new thunks every call, so a dependency is resolved at most once per call
+            List<Caller<T>> thunks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int index = i;
+                thunks.add(Caller.ofFunctionMemo(CallerImpl.serializable(a -> source.apply(index))));
+            }
+            return call.apply(new CastList<>(thunks));
+        });
+        return new Caller<>(type, null, lazy, null);
+    }
+
+    /**
+     * Call with lazy (call-by-need) dependencies. Function receives
+     * dependencies unresolved, and a dependency is resolved only if the
+     * returned caller depends on it, at most once per call. Generated
+     * dependencies are not even generated until then.
+     *
+     * @param call
+     * @return
+     */
+    public Caller<T> toLazyCall(CheckedFunction<CastList<Caller<T>>, Caller<T>> call) {
+        return toLazy(Caller.CallerType.FUNCTION, call);
+    }
+
+    /**
+     * Call with lazy (call-by-need) dependencies. Function receives
+     * dependencies unresolved, and a dependency is resolved only if the
+     * returned caller depends on it, at most once per call. Generated
+     * dependencies are not even generated until then. Memoized (runs only
+     * once and stores result).
+     *
+     * @param call
+     * @return
+     */
+    public Caller<T> toLazyCallMemo(CheckedFunction<CastList<Caller<T>>, Caller<T>> call) {
+        return toLazy(Caller.CallerType.MEMOIZING, call);
+    }
+
+    /**
+     * First dependency result, which matches the predicate. Resolved in
+     * order, skipping the rest after a match. When forked, dependencies race:
+     * the first matching result in time wins and remaining dependencies are
+     * cancelled, together with their nested forks.
+     *
+     * @param predicate which result to accept
+     * @param otherwise what to call if no result matches
+     * @return
+     */
+    public Caller<T> toAnyCall(CheckedFunction<T, Boolean> predicate, Caller<T> otherwise) {
+        Objects.requireNonNull(predicate);
+        Objects.requireNonNull(otherwise);
+        if (generator != null) {
+            return new CallerImpl.RaceCaller<>(otherwise, generatedCount, generator, predicate);
+        }
+        List<Caller<T>> deps = dependants == null ? Collections.emptyList() : dependencies();
+        return new CallerImpl.RaceCaller<>(otherwise, deps.size(), new CallerImpl.ListGenerator<>(deps), predicate);
+    }
+
+    /**
+     * First dependency result, which matches the predicate, or {@code null}.
+     * When forked, dependencies race (see {@link #toAnyCall(CheckedFunction, Caller)}).
+     *
+     * @param predicate which result to accept
+     * @return
+     */
+    public Caller<T> toAnyCall(CheckedFunction<T, Boolean> predicate) {
+        return toAnyCall(predicate, Caller.ofNull());
+    }
+
+    /**
+     * First non-null dependency result or {@code null}. When forked,
+     * dependencies race (see {@link #toAnyCall(CheckedFunction, Caller)}).
+     *
+     * @return
+     */
+    public Caller<T> toFirstNonNullCall() {
+        return toAnyCall(CallerImpl.serializable(Objects::nonNull));
+    }
+
+    private <A> Caller<T> toFold(Caller.CallerType type, A initial, CheckedBiFunction<A, T, A> accumulator, CheckedFunction<A, Caller<T>> finisher) {
+        Objects.requireNonNull(accumulator);
+        Objects.requireNonNull(finisher);
+        if (generator != null) {
+            return new CallerImpl.FoldCaller<>(type, generatedCount, generator, initial, accumulator, finisher);
+        }
+        List<Caller<T>> deps = dependants == null ? Collections.emptyList() : dependencies();
+        return new CallerImpl.FoldCaller<>(type, deps.size(), new CallerImpl.ListGenerator<>(deps), initial, accumulator, finisher);
+    }
+
+    /**
+     * Fold every dependency result (in dependency order) into an accumulator
+     * as soon as it is resolved, instead of collecting all of the results.
+     *
+     * @param <A> accumulator type
+     * @param initial initial accumulator value
+     * @param accumulator {@code (acc, result) -> acc}
+     * @param finisher what to call with final accumulator value
+     * @return
+     */
+    public <A> Caller<T> toFoldCall(A initial, CheckedBiFunction<A, T, A> accumulator, CheckedFunction<A, Caller<T>> finisher) {
+        return toFold(Caller.CallerType.FUNCTION, initial, accumulator, finisher);
+    }
+
+    /**
+     * Fold every dependency result (in dependency order) into an accumulator
+     * as soon as it is resolved, instead of collecting all of the results.
+     * Memoized (runs only once and stores result).
+     *
+     * @param <A> accumulator type
+     * @param initial initial accumulator value
+     * @param accumulator {@code (acc, result) -> acc}
+     * @param finisher what to call with final accumulator value
+     * @return
+     */
+    public <A> Caller<T> toFoldCallMemo(A initial, CheckedBiFunction<A, T, A> accumulator, CheckedFunction<A, Caller<T>> finisher) {
+        return toFold(Caller.CallerType.MEMOIZING, initial, accumulator, finisher);
+    }
+
+    /**
+     * Fold every dependency result (in dependency order) into an accumulator
+     * as soon as it is resolved. Final accumulator value is the result.
+     *
+     * @param initial initial accumulator value
+     * @param accumulator {@code (acc, result) -> acc}
+     * @return
+     */
+    public Caller<T> toFoldResultCall(T initial, CheckedBiFunction<T, T, T> accumulator) {
+        return toFold(Caller.CallerType.FUNCTION, initial, accumulator, CallerImpl.serializable(Caller::ofResult));
+    }
+
+    /**
+     * Fold every dependency result (in dependency order) into an accumulator
+     * as soon as it is resolved. Final accumulator value is the result.
+     * Memoized (runs only once and stores result).
+     *
+     * @param initial initial accumulator value
+     * @param accumulator {@code (acc, result) -> acc}
+     * @return
+     */
+    public Caller<T> toFoldResultCallMemo(T initial, CheckedBiFunction<T, T, T> accumulator) {
+        return toFold(Caller.CallerType.MEMOIZING, initial, accumulator, CallerImpl.serializable(Caller::ofResult));
+    }
+
+    private Caller<T> toReduce(Caller.CallerType type, CheckedBiFunction<T, T, T> combiner, CheckedFunction<T, Caller<T>> finisher) {
+        Objects.requireNonNull(combiner);
+        Objects.requireNonNull(finisher);
+        if (generator != null) {
+            return new CallerImpl.ReduceCaller<>(type, generatedCount, generator, combiner, finisher);
+        }
+        List<Caller<T>> deps = dependants == null ? Collections.emptyList() : dependencies();
+        return new CallerImpl.ReduceCaller<>(type, deps.size(), new CallerImpl.ListGenerator<>(deps), combiner, finisher);
+    }
+
+    /**
+     * Reduce dependency results with associative combiner, keeping dependency
+     * order. When dependencies are forked, adjacent results are combined
+     * pairwise in parallel as they arrive, otherwise results are combined left
+     * to right as soon as they are resolved.
+     *
+     * @param combiner associative {@code (a, b) -> a + b}
+     * @param finisher what to call with reduced value ({@code null} if there
+     * are no dependencies)
+     * @return
+     */
+    public Caller<T> toReduceCall(CheckedBiFunction<T, T, T> combiner, CheckedFunction<T, Caller<T>> finisher) {
+        return toReduce(Caller.CallerType.FUNCTION, combiner, finisher);
+    }
+
+    /**
+     * Reduce dependency results with associative combiner, keeping dependency
+     * order. Memoized (runs only once and stores result).
+     *
+     * @param combiner associative {@code (a, b) -> a + b}
+     * @param finisher what to call with reduced value ({@code null} if there
+     * are no dependencies)
+     * @return
+     */
+    public Caller<T> toReduceCallMemo(CheckedBiFunction<T, T, T> combiner, CheckedFunction<T, Caller<T>> finisher) {
+        return toReduce(Caller.CallerType.MEMOIZING, combiner, finisher);
+    }
+
+    /**
+     * Reduce dependency results with associative combiner, keeping dependency
+     * order. Reduced value ({@code null} if there are no dependencies) is the
+     * result.
+     *
+     * @param combiner associative {@code (a, b) -> a + b}
+     * @return
+     */
+    public Caller<T> toReduceResultCall(CheckedBiFunction<T, T, T> combiner) {
+        return toReduce(Caller.CallerType.FUNCTION, combiner, CallerImpl.serializable(Caller::ofResult));
+    }
+
+    /**
+     * Reduce dependency results with associative combiner, keeping dependency
+     * order. Reduced value ({@code null} if there are no dependencies) is the
+     * result. Memoized (runs only once and stores result).
+     *
+     * @param combiner associative {@code (a, b) -> a + b}
+     * @return
+     */
+    public Caller<T> toReduceResultCallMemo(CheckedBiFunction<T, T, T> combiner) {
+        return toReduce(Caller.CallerType.MEMOIZING, combiner, CallerImpl.serializable(Caller::ofResult));
     }
 
     public Caller<T> toCall(Callable<Caller<T>> call) {
         Objects.requireNonNull(call);
-        return toCall(args -> Caller.ofCallable(call));
+        return toCall(CallerImpl.serializable(args -> Caller.ofCallable(call)));
     }
 
     public Caller<T> toCallMemo(Callable<Caller<T>> call) {
         Objects.requireNonNull(call);
-        return toCallMemo(args -> Caller.ofCallable(call));
+        return toCallMemo(CallerImpl.serializable(args -> Caller.ofCallable(call)));
     }
 
     public Caller<T> toRunnable(CheckedRunnable run) {
         Objects.requireNonNull(run);
-        return toCall(args -> Caller.ofRunnable(run));
+        return toCall(CallerImpl.serializable(args -> Caller.ofRunnable(run)));
     }
 
     public Caller<T> toRunnableMemo(CheckedRunnable run) {
         Objects.requireNonNull(run);
-        return toCallMemo(args -> Caller.ofRunnable(run));
+        return toCallMemo(CallerImpl.serializable(args -> Caller.ofRunnable(run)));
     }
 }
@@ -0,0 +1,48 @@
+package lt.lb.caller;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Mutable input of incremental recomputation. Resolves to its current value.
+ * Setting a value invalidates every {@link CallerNode} which depends on this
+ * cell, directly or transitively.
+ *
+ * @author laim0nas100
+ * @param <T>
+ */
+public class CallerCell<T> extends Caller<T> {
+
+    private static final long serialVersionUID = 1L;
+
+    final Set<CallerNode<?>> dependents = ConcurrentHashMap.newKeySet();
+    protected final AtomicReference<T> ref;
+
+    CallerCell(T value) {
+        this(new AtomicReference<>(value));
+    }
+
+    private CallerCell(AtomicReference<T> ref) {
+        super(CallerType.FUNCTION, null, CallerImpl.serializable(args -> Caller.ofResult(ref.get())), null);
+        this.ref = ref;
+    }
+
+    /**
+     * @return current value
+     */
+    public T get() {
+        return ref.get();
+    }
+
+    /**
+     * Set a new value and invalidate dependent nodes.
+     *
+     * @param value
+     */
+    public void set(T value) {
+        ref.set(value);
+        CallerNode.invalidate(dependents);
+    }
+
+}
@@ -0,0 +1,251 @@
+package lt.lb.caller;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import lt.lb.caller.CallerImpl.StackFrame;
+
+/**
+ * Periodic checkpoint of a single-threaded resolution. Explicit stack, partial
+ * arguments, call counter and memoized values (including keyed caller table)
+ * are written to a file, so that resolution can be continued with
+ * {@link CallerResolve#resume(Path)} after a crash or a restart.
+ *
+ * Checkpoint is a compressed object stream, written frame by frame into a
+ * temporary file which then replaces the previous checkpoint, so a failed
+ * write never corrupts it. Stream is reset after each frame, so written
+ * frames are not retained by the stream. Callers are written once and
+ * referred to by index afterwards, so that callers shared between frames
+ * (memoized ones in particular) keep their identity. A single frame is still
+ * serialized recursively, so the depth of a caller graph, which is created
+ * before resolution, is bounded by thread stack. Every {@link Caller} on the stack (and every
+ * function it holds) must be {@link java.io.Serializable}, which in practice
+ * means functions typed as
+ * {@link lt.lb.caller.util.SerializableCheckedFunction} and the like, with
+ * serializable captured values. Keyed callers made from lambdas are
+ * serializable too. Callers made from plain {@code Checked} interfaces,
+ * {@link java.util.concurrent.Callable} or {@link java.util.Iterator} are
+ * not.
+ *
+ * Checkpointed resolution never forks. Failed checkpoint is logged and
+ * skipped, previous one is kept. Checkpoint file is deleted after successful
+ * resolution.
+ *
+ * Immutable.
+ *
+ * @author laim0nas100
+ */
+public class CallerCheckpoint {
+
+    private static final int MAGIC = 0xCA11E2C9;
+    private static final int VERSION = 2;
+    /**
+     * How many resolver steps to make between clock checks
+     */
+    private static final int CLOCK_MASK = 1023;
+    private static final Logger LOG = Logger.getLogger(CallerCheckpoint.class.getName());
+
+    public final Path file;
+    public final long intervalMillis;
+
+    /**
+     * @param file where to write checkpoints
+     * @param intervalMillis minimal time between checkpoints
+     */
+    public CallerCheckpoint(Path file, long intervalMillis) {
+        this.file = Objects.requireNonNull(file);
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Resolution state, read from a checkpoint or about to be written.
+     */
+    static class State<T> {
+
+        final long callNumber;
+        final CallerInterner interner;
+        final Caller<T> caller;
+        final Deque<Caller<T>> firstMemoizedStack;
+        final Deque<StackFrame<T>> stack;
+
+        State(long callNumber, CallerInterner interner, Caller<T> caller, Deque<Caller<T>> firstMemoizedStack, Deque<StackFrame<T>> stack) {
+            this.callNumber = callNumber;
+            this.interner = interner;
+            this.caller = caller;
+            this.firstMemoizedStack = firstMemoizedStack;
+            this.stack = stack;
+        }
+    }
+
+    /**
+     * Tracks time of last checkpoint of a single resolution.
+     */
+    class Timer {
+
+        long steps;
+        long last = System.currentTimeMillis();
+
+        /**
+         * Called each resolver step.
+         *
+         * @return whether checkpoint is due
+         */
+        boolean due() {
+            if ((++steps & CLOCK_MASK) != 0) {
+                return false;
+            }
+            long now = System.currentTimeMillis();
+            if (now - last < intervalMillis) {
+                return false;
+            }
+            last = now;
+            return true;
+        }
+    }
+
+    Timer timer() {
+        return new Timer();
+    }
+
+    <T> void write(State<T> state) {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (CheckpointOutput out = new CheckpointOutput(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temp))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(state.callNumber);
+                out.writeObject(state.interner);
+                out.writeObject(state.caller);
+                out.writeObject(state.firstMemoizedStack);
+                out.writeInt(state.stack.size());
+                for (StackFrame<T> frame : state.stack) {
+                    out.reset();
+                    out.writeObject(frame);
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ex) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException suppressed) {
+                ex.addSuppressed(suppressed);
+            }
+            // previous checkpoint is intact, so resolution goes on
+            LOG.log(Level.WARNING, "Failed to write checkpoint " + file + ", skipped", ex);
+        }
+    }
+
+    static <T> State<T> read(Path file) {
+        try (CheckpointInput in = new CheckpointInput(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new InvalidObjectException("Not a checkpoint of this version");
+            }
+            long callNumber = in.readLong();
+            CallerInterner interner = (CallerInterner) in.readObject();
+            Caller<T> caller = (Caller<T>) in.readObject();
+            Deque<Caller<T>> firstMemoizedStack = (Deque<Caller<T>>) in.readObject();
+            int size = in.readInt();
+            Deque<StackFrame<T>> stack = new ArrayDeque<>(size);
+            for (int i = 0; i < size; i++) {
+                stack.addLast((StackFrame<T>) in.readObject());
+            }
+            return new State<>(callNumber, interner, caller, firstMemoizedStack, stack);
+        } catch (IOException | ClassNotFoundException ex) {
+            throw new CallerException("Failed to read checkpoint " + file, ex);
+        }
+    }
+
+    /**
+     * Caller, which is already defined in checkpoint.
+     */
+    static class Reference implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        final int index;
+
+        Reference(int index) {
+            this.index = index;
+        }
+    }
+
+    /**
+     * Callers are numbered in the order they are first written. Stream reset
+     * forgets them, so callers written before reset are replaced by their
+     * numbers.
+     */
+    static class CheckpointOutput extends ObjectOutputStream {
+
+        final IdentityHashMap<Caller, Integer> written = new IdentityHashMap<>();
+
+        CheckpointOutput(OutputStream out) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            if (obj instanceof Caller) {
+                Integer index = written.putIfAbsent((Caller) obj, written.size());
+                if (index != null) {
+                    return new Reference(index);
+                }
+            }
+            return obj;
+        }
+    }
+
+    /**
+     * Callers register themselves (see {@link Caller}) before their fields
+     * are read, so they are numbered in the same order as written.
+     */
+    static class CheckpointInput extends ObjectInputStream {
+
+        final ArrayList<Caller> read = new ArrayList<>();
+
+        CheckpointInput(InputStream in) throws IOException {
+            super(in);
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            if (obj instanceof Reference) {
+                return read.get(((Reference) obj).index);
+            }
+            return obj;
+        }
+    }
+
+    void delete() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            throw new CallerException("Failed to delete checkpoint " + file, ex);
+        }
+    }
+
+}
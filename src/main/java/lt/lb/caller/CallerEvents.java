@@ -0,0 +1,76 @@
+package lt.lb.caller;
+
+/**
+ * Flight recorder events of resolution. This implementation does nothing,
+ * on Java 11+ multi-release jar replaces it with one, which emits JFR events
+ * (see {@code src/main/java11}). Both implementations must have the same
+ * signatures.
+ *
+ * Events are passed around as {@link Object}, so that this class does not
+ * depend on JFR.
+ *
+ * @author laim0nas100
+ */
+final class CallerEvents {
+
+    private CallerEvents() {
+    }
+
+    /**
+     * Whether resolution event is currently recorded. Additional statistics
+     * (call count, maximum depth) are only gathered by resolutions, which
+     * began while recording.
+     *
+     * @return always {@code false}
+     */
+    static boolean recording() {
+        return false;
+    }
+
+    /**
+     * @return resolution event, which has begun
+     */
+    static Object resolutionBegin() {
+        return null;
+    }
+
+    /**
+     * @param event
+     * @param calls how many calls were made
+     * @param maxDepth maximum explicit stack size of a single thread
+     */
+    static void resolutionEnd(Object event, long calls, int maxDepth) {
+    }
+
+    /**
+     * @return fork batch event, which has begun
+     */
+    static Object forkBegin() {
+        return null;
+    }
+
+    /**
+     * @param event
+     * @param fanOut how many dependencies were forked
+     */
+    static void forkEnd(Object event, int fanOut) {
+    }
+
+    /**
+     * @return memoized value wait event, which has begun
+     */
+    static Object memoWaitBegin() {
+        return null;
+    }
+
+    static void memoWaitEnd(Object event) {
+    }
+
+    /**
+     * @param limit which limit was reached
+     * @param value limit value
+     */
+    static void limitReached(String limit, long value) {
+    }
+
+}
@@ -1,24 +1,30 @@
 package lt.lb.caller;
 
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
+import java.util.RandomAccess;
 import java.util.stream.Stream;
 import lt.lb.caller.util.CheckedBiFunction;
 import lt.lb.caller.util.CheckedFunction;
+import lt.lb.caller.util.CheckedIntObjFunction;
 import lt.lb.caller.util.IndexedIterator;
 
 /**
  * @param <R> type that iteration happens
  * @param <T> the main type of Caller product
  * By default every evaluation call ends with {@code continue} and loop return {@code null};
+ * Arrays and random access lists are iterated by primitive index, without an iterator.
  * @author laim0nas100
  */
 public class CallerForBuilder<R, T> {
 
     protected boolean bulk = false;
     protected IndexedIterator<R> iter;
-    protected CheckedBiFunction<Integer, R, Caller<T>> contFunction;
-    protected CheckedBiFunction<Integer, T, CallerFlowControl<T>> thenFunction;
+    protected List<R> list;
+    protected CheckedIntObjFunction<R, Caller<T>> contFunction;
+    protected CheckedIntObjFunction<T, CallerFlowControl<T>> thenFunction;
     protected Caller<T> afterwards;
 
     public CallerForBuilder() {
@@ -42,25 +48,32 @@ public class CallerForBuilder<R, T> {
      */
     public CallerForBuilder<R, T> with(Iterator<R> iterator) {
         this.iter = new IndexedIterator<>(iterator);
+        this.list = null;
         return this;
     }
 
     /**
      *
-     * @param iterable items to iterate
+     * @param iterable items to iterate. Random access {@link List} is iterated
+     * by index.
      * @return builder
      */
     public CallerForBuilder<R, T> with(Iterable<R> iterable) {
+        if (iterable instanceof List && iterable instanceof RandomAccess) {
+            this.list = (List<R>) iterable;
+            this.iter = null;
+            return this;
+        }
         return with(iterable.iterator());
     }
 
     /**
      *
-     * @param array items to iterate
+     * @param array items to iterate by index
      * @return builder
      */
     public CallerForBuilder<R, T> with(R... array) {
-        return with(Stream.of(array).iterator());
+        return with(Arrays.asList(array));
     }
 
     /**
@@ -80,13 +93,18 @@ public class CallerForBuilder<R, T> {
      */
     public Caller<T> build() {
         Objects.requireNonNull(afterwards);
-        Objects.requireNonNull(iter);
+        if (iter == null) {
+            Objects.requireNonNull(list);
+        }
         Objects.requireNonNull(contFunction);
         Objects.requireNonNull(thenFunction);
         if (bulk) {
-            return CallerImpl.ofIteratorLazyBulk(afterwards, iter, contFunction, thenFunction);
+            IndexedIterator<R> iterator = iter == null ? new IndexedIterator<>(list.iterator()) : iter;
+            return CallerImpl.ofIteratorLazyBulkInt(afterwards, iterator, contFunction, thenFunction);
+        } else if (list != null) {
+            return CallerImpl.ofListLoop(afterwards, list, contFunction, thenFunction);
         } else {
-            return CallerImpl.ofIteratorLazy(afterwards, iter, contFunction, thenFunction);
+            return CallerImpl.ofIteratorLazyInt(afterwards, iter, contFunction, thenFunction);
         }
 
     }
@@ -100,7 +118,7 @@ public class CallerForBuilder<R, T> {
      */
     public CallerForBuilder<R, T> evaluate(CheckedFunction<T, CallerFlowControl<T>> thenFunction) {
         Objects.requireNonNull(thenFunction);
-        return evaluate((i, item) -> thenFunction.apply(item));
+        return evaluateInt((i, item) -> thenFunction.apply(item));
     }
 
     /**
@@ -111,6 +129,18 @@ public class CallerForBuilder<R, T> {
      * @return builder
      */
     public CallerForBuilder<R, T> evaluate(CheckedBiFunction<Integer, T, CallerFlowControl<T>> thenFunction) {
+        Objects.requireNonNull(thenFunction);
+        return evaluateInt(thenFunction::applyUnchecked);
+    }
+
+    /**
+     * How to evaluate each item with primitive index
+     *
+     * @param thenFunction evaluation function that gets how to proceed in the
+     * middle of a {@code for} loop
+     * @return builder
+     */
+    public CallerForBuilder<R, T> evaluateInt(CheckedIntObjFunction<T, CallerFlowControl<T>> thenFunction) {
         this.thenFunction = thenFunction;
         return this;
     }
@@ -124,7 +154,7 @@ public class CallerForBuilder<R, T> {
      */
     public CallerForBuilder<R, T> forEachCall(CheckedFunction<R, Caller<T>> contFunction) {
         Objects.requireNonNull(contFunction);
-        return this.forEachCall((i, item) -> contFunction.apply(item));
+        return this.forEachCallInt((i, item) -> contFunction.apply(item));
     }
 
     /**
@@ -135,6 +165,18 @@ public class CallerForBuilder<R, T> {
      * @return
      */
     public CallerForBuilder<R, T> forEachCall(CheckedBiFunction<Integer, R, Caller<T>> contFunction) {
+        Objects.requireNonNull(contFunction);
+        return this.forEachCallInt(contFunction::applyUnchecked);
+    }
+
+    /**
+     * Create recursive calls for each (index,item) pair with primitive index
+     * and unsafe function masking any exceptions.
+     *
+     * @param contFunction
+     * @return
+     */
+    public CallerForBuilder<R, T> forEachCallInt(CheckedIntObjFunction<R, Caller<T>> contFunction) {
         this.contFunction = contFunction;
         return this;
     }
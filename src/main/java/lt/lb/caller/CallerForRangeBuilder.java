@@ -0,0 +1,117 @@
+package lt.lb.caller;
+
+import java.util.Objects;
+import lt.lb.caller.util.CheckedFunction;
+import lt.lb.caller.util.CheckedLongFunction;
+import lt.lb.caller.util.CheckedLongObjFunction;
+
+/**
+ * {@code for} loop over index range caller builder. Index is primitive and
+ * iteration happens without any iterator.
+ *
+ * By default every evaluation call ends with {@code continue} and loop return
+ * {@code null};
+ *
+ * @param <T> the main type of Caller product
+ * @author laim0nas100
+ */
+public class CallerForRangeBuilder<T> {
+
+    protected long from;
+    protected long to;
+    protected long step = 1;
+    protected CheckedLongFunction<Caller<T>> contFunction;
+    protected CheckedLongObjFunction<T, CallerFlowControl<T>> thenFunction;
+    protected Caller<T> afterwards;
+
+    public CallerForRangeBuilder() {
+        thenFunction = (i, c) -> Caller.flowContinue();
+        afterwards = Caller.ofNull();
+    }
+
+    /**
+     *
+     * @param from first index (inclusive)
+     * @param to last index (exclusive)
+     * @return builder
+     */
+    public CallerForRangeBuilder<T> range(long from, long to) {
+        return range(from, to, 1);
+    }
+
+    /**
+     *
+     * @param from first index (inclusive)
+     * @param to last index (exclusive)
+     * @param step positive index increment
+     * @return builder
+     */
+    public CallerForRangeBuilder<T> range(long from, long to, long step) {
+        if (step <= 0) {
+            throw new IllegalArgumentException("Step must be positive, got " + step);
+        }
+        this.from = from;
+        this.to = to;
+        this.step = step;
+        return this;
+    }
+
+    /**
+     * @param afterwards Caller when range runs out of indices (or never had
+     * them to begin with) so {@code for} loop never exited inside or exited
+     * with break condition.
+     * @return builder
+     */
+    public CallerForRangeBuilder<T> afterwards(Caller<T> afterwards) {
+        this.afterwards = afterwards;
+        return this;
+    }
+
+    /**
+     *
+     * @return created Caller that models such loop
+     */
+    public Caller<T> build() {
+        Objects.requireNonNull(afterwards);
+        Objects.requireNonNull(contFunction);
+        Objects.requireNonNull(thenFunction);
+        return CallerImpl.ofRangeLoop(afterwards, from, to, step, contFunction, thenFunction);
+    }
+
+    /**
+     * How to evaluate each result ignoring indices
+     *
+     * @param thenFunction evaluation function that gets how to proceed in the
+     * middle of a {@code for} loop
+     * @return builder
+     */
+    public CallerForRangeBuilder<T> evaluate(CheckedFunction<T, CallerFlowControl<T>> thenFunction) {
+        Objects.requireNonNull(thenFunction);
+        return evaluate((i, item) -> thenFunction.apply(item));
+    }
+
+    /**
+     * How to evaluate each (index,result) pair
+     *
+     * @param thenFunction evaluation function that gets how to proceed in the
+     * middle of a {@code for} loop
+     * @return builder
+     */
+    public CallerForRangeBuilder<T> evaluate(CheckedLongObjFunction<T, CallerFlowControl<T>> thenFunction) {
+        this.thenFunction = thenFunction;
+        return this;
+    }
+
+    /**
+     * Create recursive calls for each index with unsafe function masking any
+     * exceptions.
+     *
+     * @param contFunction
+     * @return
+     */
+    public CallerForRangeBuilder<T> forEachCall(CheckedLongFunction<Caller<T>> contFunction) {
+        this.contFunction = contFunction;
+        return this;
+    }
+
+}
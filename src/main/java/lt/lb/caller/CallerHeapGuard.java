@@ -0,0 +1,102 @@
+package lt.lb.caller;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Heap pressure aware limits. Heap usage is measured as the fullest heap
+ * {@link MemoryPoolMXBean} relative to its maximum size, using usage after
+ * the last garbage collection (where supported), so uncollected garbage does
+ * not count as pressure. Until a pool is collected for the first time, its
+ * current usage is used instead.
+ *
+ * When usage reaches fork limit, dependencies are resolved inline instead of
+ * forking. When usage reaches fail limit, resolution fails with
+ * {@link CallerException}. Fail limit is checked every {@code 1024} resolver
+ * steps (of each forked branch) and on every fork.
+ *
+ * Immutable.
+ *
+ * @author laim0nas100
+ */
+public class CallerHeapGuard {
+
+    /**
+     * Resolver step mask, at which heap is checked
+     */
+    static final int CHECK_MASK = 1023;
+
+    private static final List<MemoryPoolMXBean> pools = heapPools();
+
+    public final double forkLimit;
+    public final double failLimit;
+
+    /**
+     * @param forkLimit fraction of maximum heap usage, after which forking
+     * stops, in {@code (0, 1]}
+     * @param failLimit fraction of maximum heap usage, after which resolution
+     * fails, in {@code [forkLimit, 1]}
+     */
+    public CallerHeapGuard(double forkLimit, double failLimit) {
+        if (!(forkLimit > 0 && forkLimit <= 1)) {
+            throw new IllegalArgumentException("Fork limit must be in (0, 1], got " + forkLimit);
+        }
+        if (!(failLimit > 0 && failLimit <= 1)) {
+            throw new IllegalArgumentException("Fail limit must be in (0, 1], got " + failLimit);
+        }
+        if (forkLimit > failLimit) {
+            throw new IllegalArgumentException("Fork limit " + forkLimit + " is over fail limit " + failLimit);
+        }
+        this.forkLimit = forkLimit;
+        this.failLimit = failLimit;
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        List<MemoryPoolMXBean> list = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                list.add(pool);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * @return fraction of maximum size of the fullest heap pool
+     */
+    public static double heapUsage() {
+        double max = 0;
+        for (MemoryPoolMXBean pool : pools) {
+            MemoryUsage usage = pool.isCollectionUsageThresholdSupported() ? pool.getCollectionUsage() : null;
+            if (usage == null || usage.getUsed() == 0) { // not collected yet
+                usage = pool.getUsage();
+            }
+            if (usage == null || usage.getMax() <= 0) {
+                continue;
+            }
+            max = Math.max(max, (double) usage.getUsed() / usage.getMax());
+        }
+        return max;
+    }
+
+    boolean canFork() {
+        double usage = heapUsage();
+        assertUsage(usage);
+        return usage < forkLimit;
+    }
+
+    void assertHeap() {
+        assertUsage(heapUsage());
+    }
+
+    private void assertUsage(double usage) {
+        if (usage >= failLimit) {
+            throw new CallerException("Heap usage over limit " + usage + " >= " + failLimit);
+        }
+    }
+
+}
@@ -1,31 +1,55 @@
 package lt.lb.caller;
 
 import java.io.Serializable;
+import java.lang.ref.SoftReference;
+import java.nio.file.Path;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import lt.lb.caller.Caller.CallerType;
 import lt.lb.caller.CallerFlowControl.CallerForType;
 import lt.lb.caller.util.CastList;
 import lt.lb.caller.util.CheckedBiFunction;
 import lt.lb.caller.util.CheckedException;
 import lt.lb.caller.util.CheckedFunction;
+import lt.lb.caller.util.CheckedIntFunction;
+import lt.lb.caller.util.CheckedIntObjFunction;
+import lt.lb.caller.util.CheckedLongFunction;
+import lt.lb.caller.util.CheckedLongObjFunction;
 import lt.lb.caller.util.IndexedIterator;
-import lt.lb.caller.util.IndexedIterator.IndexedValue;
+import lt.lb.caller.util.SerializableCheckedBiFunction;
+import lt.lb.caller.util.SerializableCheckedFunction;
 import lt.lb.caller.util.sync.CompletablePromise;
+import lt.lb.caller.util.sync.CompletingPromise;
 import lt.lb.caller.util.sync.Promise;
 import lt.lb.caller.util.sync.ValuePromise;
 
@@ -35,6 +59,22 @@ import lt.lb.caller.util.sync.ValuePromise;
  */
 public class CallerImpl {
 
+    /**
+     * Target of wrapping lambdas, so that wrapped callers stay serializable
+     * (see {@link CallerCheckpoint}), if wrapped functions are.
+     */
+    static <P, R> CheckedFunction<P, R> serializable(SerializableCheckedFunction<P, R> func) {
+        return func;
+    }
+
+    /**
+     * Target of wrapping lambdas, so that wrapped callers stay serializable
+     * (see {@link CallerCheckpoint}), if wrapped functions are.
+     */
+    static <O, P, R> CheckedBiFunction<O, P, R> serializable(SerializableCheckedBiFunction<O, P, R> func) {
+        return func;
+    }
+
     static class ThreadStack {
 
         final ThreadStack parent;
@@ -101,19 +141,56 @@ public class CallerImpl {
 
     static class StackFrame<T> implements Serializable {
 
+        private static final long serialVersionUID = 1L;
+
         Caller<T> call;
         ArrayList<T> args;
+        T arg0;
+        T arg1;
+        int argCount;
         int index;
+        long counter;
+        Object state;
+        Deferred<T> deferred;
         Collection<Caller<T>> memoizingStack;
+        /**
+         * Call is a lean copy owned by this frame, so consumed dependencies
+         * can be released from it
+         */
+        boolean owned;
 
         public StackFrame(Caller<T> call) {
             continueWith(call);
         }
 
+        public StackFrame(Caller<T> call, boolean lean) {
+            continueWith(call, lean);
+        }
+
+        /**
+         * Continue with a lean copy of given caller, if lean and caller can be
+         * copied.
+         *
+         * @param call
+         * @param lean
+         */
+        public final void continueWith(Caller<T> call, boolean lean) {
+            Caller<T> copy = lean ? call.leanCopy() : null;
+            continueWith(copy == null ? call : copy);
+            owned = copy != null;
+        }
+
         public final void continueWith(Caller<T> call) {
-            this.args = call.dependencies == null ? null : new ArrayList<>(call.dependencies.size());
             this.call = call;
+            this.owned = false;
             this.index = 0;
+            this.argCount = 0;
+            this.arg0 = null;
+            this.arg1 = null;
+            this.counter = 0;
+            this.state = null;
+            this.deferred = null;
+            call.prepare(this);
             if (call.type == CallerType.MEMOIZING) {
                 if (memoizingStack == null) {
                     memoizingStack = new ArrayDeque<>();
@@ -122,307 +199,2536 @@ public class CallerImpl {
             }
         }
 
-        public boolean readyArgs(Caller<T> c) {
-            return args == null || c.dependencies == null || this.args.size() == c.dependencies.size();
+        public void addArg(T arg) {
+            if (deferred != null) { // keep order after a pending argument
+                if (deferred.resuming >= 0) { // result of a parked frame
+                    deferred.slots.set(deferred.resuming, arg);
+                    deferred.resuming = -1;
+                    return;
+                }
+                deferred.slots.add(arg);
+                argCount++;
+                return;
+            }
+            call.accept(this, argCount++, arg);
         }
 
-        @Override
-        public String toString() {
-            return "StackFrame{" + "call=" + call + ", args=" + args + ", index=" + index + ", memoizingStack=" + memoizingStack + '}';
+        /**
+         * Reserve argument position for a value, which is not yet computed.
+         *
+         * @param future
+         */
+        public void defer(CompletableFuture<T> future) {
+            defer(future, null);
         }
 
-    }
-
-    /**
-     * Resolve Caller with optional limits
-     *
-     * @param <T>
-     * @param caller
-     * @param interruptible check if interrupted before each call
-     * @param stackLimit limit of a stack size (each nested dependency expands
-     * stack by 1). Use non-positive to disable limit.
-     * @param callLimit limit of how many calls can be made (useful for endless
-     * recursion detection). Use non-positive to disable limit.
-     * @param forkCount how many fork levels to allow (uses recursion) amount of
-     * forks is determined by {@link Caller} dependencies
-     * @param exe executor
-     * @return
-     */
-    public static <T> T resolveThreaded(Caller<T> caller, boolean interruptible, int stackLimit, long callLimit, int forkCount, Executor exe) throws CheckedException {
-        try {
-            ThreadStack threadStack = interruptible ? new ThreadStack() : null;
-            return resolveThreadedInner(caller, threadStack, new CallerLimits(stackLimit, callLimit, forkCount, 0), new AtomicLong(0), exe);
-        } catch (TimeoutException | InterruptedException | CancellationException | CompletionException | ExecutionException ex) {
-            throw new CheckedException(ex);
+        /**
+         * Reserve argument position for a value, which is not yet computed.
+         *
+         * @param future
+         * @param memo memoized caller, which computes the value, if any
+         */
+        public void defer(CompletableFuture<T> future, Caller<T> memo) {
+            if (deferred == null) {
+                deferred = new Deferred<>(argCount);
+            }
+            deferred.slots.add(new Pending<>(future, memo));
+            deferred.batched |= future instanceof CallerBatch.BatchFuture;
+            argCount++;
         }
 
-    }
-
-    /**
-     * Resolve Caller with optional limits as a FutureTask
-     *
-     * @param <T>
-     * @param caller
-     * @param interruptible check if interrupted before each call
-     * @param stackLimit limit of a stack size (each nested dependency expands
-     * stack by 1). Use non-positive to disable limit.
-     * @param callLimit limit of how many calls can be made (useful for endless
-     * recursion detection). Use non-positive to disable limit.
-     * @param forkCount how many fork levels to allow (uses recursion) amount of
-     * forks is determined by {@link Caller} dependencies
-     * @param exe executor
-     * @return
-     */
-    public static <T> FutureTask<T> resolveFuture(Caller<T> caller, boolean interruptible, int stackLimit, long callLimit, int forkCount, Executor exe) {
-        return new FutureTask<>(() -> {
-            ThreadStack threadStack = interruptible ? new ThreadStack() : null;
-            return resolveThreadedInner(caller, threadStack, new CallerLimits(stackLimit, callLimit, forkCount, 0), new AtomicLong(0), exe);
-        });
-    }
+        /**
+         * Reserve argument position for a result of a frame, which waits for
+         * batched values.
+         *
+         * @param child
+         */
+        public void park(StackFrame<T> child) {
+            if (deferred != null && deferred.resuming >= 0) {
+                deferred.slots.set(deferred.resuming, new Parked<>(child));
+                deferred.resuming = -1;
+                return;
+            }
+            if (deferred == null) {
+                deferred = new Deferred<>(argCount);
+            }
+            deferred.slots.add(new Parked<>(child));
+            deferred.batched = true;
+            argCount++;
+        }
 
-    /**
-     * Retrieves items one by one, each time creating new call. Just constructs
-     * appropriate functions for {@link ofWhileLoop#ofWhileLoopSwitch}.
-     *
-     * Recommended to not use directly for readability. Use
-     * {@link CallerForBuilder}.
-     *
-     * @param <T> the main type of Caller product
-     * @param <R> type that iteration happens
-     * @param emptyCase Caller when iterator is empty or not terminated anywhere
-     * @param iterator ReadOnlyIterator that has items
-     * @param func BiFunction that provides Caller that eventually results in T
-     * type result. Used to make recursive calls from all items.
-     * @param contFunc BiFunction that checks wether to end iteration in the
-     * middle of it and how
-     * @return
-     */
-    public static <T, R> Caller<T> ofIteratorLazy(Caller<T> emptyCase, IndexedIterator<R> iterator, CheckedBiFunction<Integer, R, Caller<T>> func, CheckedBiFunction<Integer, T, CallerFlowControl<T>> contFunc) {
+        /**
+         * Accept deferred arguments in order, waiting for pending ones.
+         *
+         * @param owner who waits
+         * @param stack stack of this frame
+         * @param firstMemoizedStack
+         */
+        public void acceptDeferred(Object owner, Deque<StackFrame<T>> stack, Collection<Caller<T>> firstMemoizedStack) throws InterruptedException, ExecutionException {
+            Deferred<T> d = deferred;
+            deferred = null;
+            int position = d.start;
+            for (Object slot : d.slots) {
+                T value;
+                if (slot instanceof Pending) {
+                    Pending<T> pending = (Pending<T>) slot;
+                    if (pending.memo != null) {
+                        awaitMemo(pending.memo, owner, stack, firstMemoizedStack);
+                    }
+                    value = pending.future.join();
+                } else {
+                    value = (T) slot;
+                }
+                call.accept(this, position++, value);
+            }
+        }
 
-        return ofWhileLoop(
-                emptyCase,
-                iterator::hasNext,
-                () -> {
-                    IndexedValue<R> nextIndexed = iterator.nextIndexed();
-                    return func.apply(nextIndexed.index, nextIndexed.value);
-                },
-                item -> contFunc.apply(iterator.getCurrentIndex(), item)
-        );
+        @Override
+        public String toString() {
+            return "StackFrame{" + "call=" + call + ", args=" + args + ", index=" + index + ", memoizingStack=" + memoizingStack + '}';
+        }
 
     }
 
     /**
-     * Retrieves items all at once and creates dependency calls for each item,
-     * which then can be executed in parallel if need be. After all items are
-     * retrieved, executed a regular {@code for} loop with those items.
-     * Recommended to use only if every item need to evaluated anyway and order
-     * of evaluation does not matter.
-     *
-     * Recommended to not use directly for readability. Use
-     * {@link CallerForBuilderBulk}.
+     * Arguments of a frame starting from the first pending one.
      *
-     * @param <T> the main type of Caller product
-     * @param <R> type that iteration happens
-     * @param emptyCase Caller when iterator is empty or not terminated anywhere
-     * @param iterator ReadOnlyIterator that has items
-     * @param func BiFunction that provides Caller that eventually results in T
-     * type result. Used to make recursive calls from all items.
-     * @param contFunc BiFunction that checks wether to end iteration in the
-     * middle of it and how
-     * @return
+     * @param <T>
      */
-    public static <T, R> Caller<T> ofIteratorLazyBulk(Caller<T> emptyCase, IndexedIterator<R> iterator, BiFunction<Integer, R, Caller<T>> func, CheckedBiFunction<Integer, T, CallerFlowControl<T>> contFunc) {
+    static class Deferred<T> implements Serializable {
 
-        CallerBuilder<T> b = new CallerBuilder<>();
+        private static final long serialVersionUID = 1L;
 
-        while (iterator.hasNext()) {
-            IndexedValue<R> n = iterator.nextIndexed();
-            b.with(args -> func.apply(n.index, n.value));
+        final int start;
+        final ArrayList<Object> slots = new ArrayList<>();
+        /**
+         * Has batched futures or parked frames
+         */
+        boolean batched;
+        /**
+         * Slot of a parked frame, which is being resumed
+         */
+        int resuming = -1;
+        /**
+         * Parked frames from this slot are resumed next. Frames parked while
+         * expanding are already up to date.
+         */
+        int cursor = Integer.MAX_VALUE;
+
+        Deferred(int start) {
+            this.start = start;
         }
 
-        return b.toCall(args -> {
-            for (int i = 0; i < args.parameterCount; i++) {
-                T arg = args.get(i);
-                CallerFlowControl<T> apply = contFunc.apply(i, arg);
-                if (apply.flowControl == CallerForType.CONTINUE) { // assume this to be the must common response
-                    continue;
+        /**
+         * @return slot of next parked frame to resume or {@code -1}
+         */
+        int nextParked() {
+            for (int i = cursor; i < slots.size(); i++) {
+                if (slots.get(i) instanceof Parked) {
+                    return i;
                 }
-                if (apply.flowControl == CallerForType.RETURN) {
-                    return apply.caller;
+            }
+            return -1;
+        }
+
+        /**
+         * @return whether some slot waits for batched values
+         */
+        boolean waiting() {
+            for (Object slot : slots) {
+                if (slot instanceof Parked) {
+                    return true;
                 }
-                if (apply.flowControl == CallerForType.BREAK) {
-                    break;
+                if (slot instanceof Pending && CallerBatch.isQueued(((Pending) slot).future)) {
+                    return true;
                 }
-                throw new IllegalStateException("Unregocnized flow control statement " + apply.flowControl);
+            }
+            return false;
+        }
 
+        /**
+         * Dispatch every queued batch of this and parked frames.
+         */
+        void dispatch() {
+            ArrayDeque<Deferred<?>> walk = new ArrayDeque<>();
+            walk.add(this);
+            while (!walk.isEmpty()) {
+                for (Object slot : walk.pollLast().slots) {
+                    if (slot instanceof Pending) {
+                        CallerBatch.dispatch(((Pending) slot).future);
+                    } else if (slot instanceof Parked && ((Parked) slot).frame.deferred != null) {
+                        walk.add(((Parked) slot).frame.deferred);
+                    }
+                }
             }
-            return emptyCase;
-        });
+        }
 
+        /**
+         * @return future of every pending argument or {@code null} if none are
+         * pending
+         */
+        CompletableFuture<?> pending() {
+            ArrayList<CompletableFuture<?>> pending = new ArrayList<>();
+            for (Object slot : slots) {
+                if (slot instanceof Pending) {
+                    CallerBatch.dispatch(((Pending) slot).future);
+                }
+                if (slot instanceof Pending && !((Pending) slot).future.isDone()) {
+                    pending.add(((Pending) slot).future);
+                }
+            }
+            return pending.isEmpty() ? null : CompletableFuture.allOf(pending.toArray(new CompletableFuture[pending.size()]));
+        }
     }
 
-    /**
-     * Models do while loop.
-     *
-     * Recommended to not use directly for readability. Use
-     * {@link CallerDoWhileBuilder}.
-     *
-     * @param <T> the main type of Caller product
-     * @param emptyCase Caller when iterator is empty of not terminated anywhere
-     * @param condition whether to continue the loop
-     * @param func main recursive call of the loop
-     * @param contFunc how to continue with recursive call result
-     * @return
-     */
-    public static <T> Caller<T> ofDoWhileLoop(Caller<T> emptyCase, Callable<Boolean> condition, Callable<Caller<T>> func, CheckedFunction<T, CallerFlowControl<T>> contFunc) {
-        return new CallerBuilder<T>(1)
-                .with(func)
-                .toCall(args -> flowControlSwitch(contFunc.apply(args._0), emptyCase, condition, func, contFunc));
+    static class Pending<T> implements Serializable {
+
+        private static final long serialVersionUID = 1L;
 
+        final CompletableFuture<T> future;
+        /**
+         * Memoized caller, which value is pending, if any
+         */
+        final Caller<T> memo;
+
+        Pending(CompletableFuture<T> future, Caller<T> memo) {
+            this.future = future;
+            this.memo = memo;
+        }
     }
 
-    private static <T> Caller<T> flowControlSwitch(CallerFlowControl<T> apply, Caller<T> emptyCase, Callable<Boolean> condition, Callable<Caller<T>> func, CheckedFunction<T, CallerFlowControl<T>> contFunc) throws Exception {
-        switch (apply.flowControl) {
-            case CONTINUE: // this should be the most common
-                return ofWhileLoopSwitch(emptyCase, condition, func, contFunc);
-            case RETURN:
-                return apply.caller;
-            case BREAK:
-                return emptyCase;
-            default:
-                throw new IllegalStateException("Unregocnized flow control statement " + apply.flowControl);
+    static class Parked<T> implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        final StackFrame<T> frame;
+
+        Parked(StackFrame<T> frame) {
+            this.frame = frame;
         }
     }
 
     /**
-     * Models while loop.
-     *
-     * @param <T> the main type of Caller product
-     * @param emptyCase Caller when iterator is empty of not terminated anywhere
-     * @param condition whether to continue the loop
-     * @param func main recursive call of the loop
-     * @param contFunc how to continue with recursive call result
-     * @return
+     * Thrown to suspend asynchronous resolution until given future completes.
+     * Resolution state stays on the explicit stack.
      */
-    public static <T> Caller<T> ofWhileLoop(Caller<T> emptyCase, Callable<Boolean> condition, Callable<Caller<T>> func, CheckedFunction<T, CallerFlowControl<T>> contFunc) {
-        return Caller.ofCallable(() -> ofWhileLoopSwitch(emptyCase, condition, func, contFunc));
+    static class Suspension extends RuntimeException {
+
+        final CompletableFuture<?> future;
 
+        Suspension(CompletableFuture<?> future) {
+            super(null, null, false, false);
+            this.future = future;
+        }
     }
 
     /**
-     * Models while loop iteration.
+     * Leaf caller, which value is provided by a {@link CompletableFuture}.
+     * Future is obtained each time the caller is resolved.
      *
-     * @param <T> the main type of Caller product
-     * @param emptyCase Caller when iterator is empty of not terminated anywhere
-     * @param condition whether to continue the loop
-     * @param func main recursive call of the loop
-     * @param contFunc how to continue with recursive call result
-     * @return
+     * @param <T>
      */
-    private static <T> Caller<T> ofWhileLoopSwitch(Caller<T> emptyCase, Callable<Boolean> condition, Callable<Caller<T>> func, CheckedFunction<T, CallerFlowControl<T>> contFunc) throws Exception {
+    static class AsyncCaller<T> extends Caller<T> {
 
-        if (!condition.call()) {
-            return emptyCase;
+        private static final long serialVersionUID = 1L;
+
+        protected final Supplier<CompletableFuture<T>> supplier;
+
+        AsyncCaller(Supplier<CompletableFuture<T>> supplier) {
+            super(CallerType.FUNCTION, null, null, null);
+            this.supplier = supplier;
         }
 
-        return new CallerBuilder<T>(1)
-                .with(func)
-                .toCall(args -> flowControlSwitch(contFunc.apply(args._0), emptyCase, condition, func, contFunc));
+        CompletableFuture<T> start() {
+            return Objects.requireNonNull(supplier.get(), "Supplied future is null");
+        }
 
-    }
+        @Override
+        boolean hasDependencies() {
+            return true;
+        }
 
-    private static <T> T complete(Collection<Caller<T>> s, T value) {
-        if (s == null) {
-            return value;
+        @Override
+        int dependencyCount() {
+            return 0;
         }
-        for (Caller<T> call : s) {
-            call.compl.complete(value);
+
+        @Override
+        void prepare(StackFrame<T> frame) {
+            frame.args = null;
+            frame.state = start();
         }
-        s.clear();
-        return value;
-    }
 
-    private static boolean isMemoizedDone(Caller c) {
-        return c.type == CallerType.MEMOIZING && c.compl.isDone();
-    }
+        @Override
+        Caller<T> nextDependency(StackFrame<T> frame) {
+            return null;
+        }
 
-    private static boolean isMemoizedNotDone(Caller c) {
-        return c.type == CallerType.MEMOIZING && !c.compl.isDone();
-    }
+        @Override
+        CompletableFuture<?> pending(StackFrame<T> frame) {
+            CompletableFuture<T> future = (CompletableFuture<T>) frame.state;
+            CallerBatch.dispatch(future);
+            return future.isDone() ? null : future;
+        }
+
+        @Override
+        Caller<T> invoke(StackFrame<T> frame) {
+            return Caller.ofResult(((CompletableFuture<T>) frame.state).join());
+        }
 
-    private static <T> boolean runnerCAS(Caller<T> caller) {
-        return isMemoizedNotDone(caller) && caller.started.compareAndSet(false, true);
     }
 
-    private static final CastList emptyArgs = new CastList<>(null);
+    /**
+     * Caller with exactly 1 dependency, which result is stored in a frame
+     * field.
+     *
+     * @param <T>
+     */
+    static class UnaryCaller<T> extends Caller<T> {
 
-    static class CallerLimits {
+        private static final long serialVersionUID = 1L;
 
-        public final int stackLimit;
-        public final long callLimit;
-        public final int fork;
-        public final int prevStackSize;
+        protected Caller<T> dep;
+        protected final CheckedFunction<T, Caller<T>> call1;
 
-        public CallerLimits(int stackLimit, long callLimit, int fork, int prevStackSize) {
-            this.stackLimit = stackLimit;
-            this.callLimit = callLimit;
-            this.fork = fork;
-            this.prevStackSize = prevStackSize;
+        UnaryCaller(CallerType type, Caller<T> dep, CheckedFunction<T, Caller<T>> call1) {
+            super(type, null, null, null);
+            this.dep = dep;
+            this.call1 = call1;
         }
 
-        public CallerLimits newFork(Collection stack) {
-            return new CallerLimits(stackLimit, callLimit, fork - 1, prevStackSize + stack.size());
+        @Override
+        boolean hasDependencies() {
+            return true;
         }
 
-        public void assertCallLimit(AtomicLong current) {
-            if (callLimit > 0) {
-                long lim = current.getAndIncrement();
-                if (lim >= callLimit) {
-                    throw new CallerException("Call limit reached " + lim);
-                }
+        @Override
+        int dependencyCount() {
+            return 1;
+        }
+
+        @Override
+        Caller<T> dependency(int index) {
+            if (index == 0) {
+                return dep;
             }
+            throw new IndexOutOfBoundsException(index + " size:1");
         }
 
-        public void assertStackLimit(Collection stack) {
-            if (stackLimit > 0 && (prevStackSize + stackLimit) <= stack.size()) {
-                throw new CallerException("Stack limit overrun " + stack.size() + prevStackSize);
+        @Override
+        void prepare(StackFrame<T> frame) {
+            frame.args = null;
+        }
+
+        @Override
+        Caller<T> nextDependency(StackFrame<T> frame) {
+            if (frame.index >= 1) {
+                return null;
             }
+            frame.index++;
+            return dep;
         }
-    }
 
-    private static <T> T resolveThreadedInner(Caller<T> caller, ThreadStack threadStack, final CallerLimits limits, AtomicLong callNumber, Executor exe) throws InterruptedException, CancellationException, TimeoutException, ExecutionException {
+        @Override
+        void accept(StackFrame<T> frame, int position, T arg) {
+            frame.arg0 = arg;
+        }
 
-        Deque<StackFrame<T>> stack = new ArrayDeque<>();
+        @Override
+        Caller<T> invoke(StackFrame<T> frame) {
+            return call1.apply(frame.arg0);
+        }
 
-        Deque<Caller<T>> firstMemoizedStack = new ArrayDeque<>();
+        @Override
+        Caller<T> leanCopy() {
+            return type == CallerType.FUNCTION ? new UnaryCaller<>(type, dep, call1) : null;
+        }
 
-        while (true) {
-            if (threadStack != null && threadStack.wasInterrupted()) {
+        @Override
+        void releaseConsumed(StackFrame<T> frame) {
+            dep = null;
+        }
+
+        @Override
+        void releaseDependencies() {
+            dep = null;
+        }
+
+    }
+
+    /**
+     * Caller with exactly 2 dependencies, which results are stored in frame
+     * fields.
+     *
+     * @param <T>
+     */
+    static class BinaryCaller<T> extends Caller<T> {
+
+        private static final long serialVersionUID = 1L;
+
+        protected Caller<T> dep0;
+        protected Caller<T> dep1;
+        protected final CheckedBiFunction<T, T, Caller<T>> call2;
+
+        BinaryCaller(CallerType type, Caller<T> dep0, Caller<T> dep1, CheckedBiFunction<T, T, Caller<T>> call2) {
+            super(type, null, null, null);
+            this.dep0 = dep0;
+            this.dep1 = dep1;
+            this.call2 = call2;
+        }
+
+        @Override
+        boolean hasDependencies() {
+            return true;
+        }
+
+        @Override
+        int dependencyCount() {
+            return 2;
+        }
+
+        @Override
+        Caller<T> dependency(int index) {
+            switch (index) {
+                case 0:
+                    return dep0;
+                case 1:
+                    return dep1;
+                default:
+                    throw new IndexOutOfBoundsException(index + " size:2");
+            }
+        }
+
+        @Override
+        void prepare(StackFrame<T> frame) {
+            frame.args = null;
+        }
+
+        @Override
+        Caller<T> nextDependency(StackFrame<T> frame) {
+            switch (frame.index) {
+                case 0:
+                    frame.index++;
+                    return dep0;
+                case 1:
+                    frame.index++;
+                    return dep1;
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        void accept(StackFrame<T> frame, int position, T arg) {
+            if (position == 0) {
+                frame.arg0 = arg;
+            } else {
+                frame.arg1 = arg;
+            }
+        }
+
+        @Override
+        Caller<T> invoke(StackFrame<T> frame) {
+            return call2.apply(frame.arg0, frame.arg1);
+        }
+
+        @Override
+        Caller<T> leanCopy() {
+            return type == CallerType.FUNCTION ? new BinaryCaller<>(type, dep0, dep1, call2) : null;
+        }
+
+        @Override
+        void releaseConsumed(StackFrame<T> frame) {
+            if (frame.index == 1) {
+                dep0 = null;
+            } else {
+                dep1 = null;
+            }
+        }
+
+        @Override
+        void releaseDependencies() {
+            dep0 = null;
+            dep1 = null;
+        }
+
+    }
+
+    /**
+     * Caller with dependencies generated by index, only when they are needed.
+     *
+     * @param <T>
+     */
+    static class GeneratedCaller<T> extends Caller<T> {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final int count;
+        protected final CheckedIntFunction<Caller<T>> generator;
+
+        GeneratedCaller(CallerType type, int count, CheckedIntFunction<Caller<T>> generator, CheckedFunction<CastList<T>, Caller<T>> call) {
+            super(type, null, call, null);
+            this.count = count;
+            this.generator = generator;
+        }
+
+        @Override
+        boolean hasDependencies() {
+            return true;
+        }
+
+        @Override
+        int dependencyCount() {
+            return count;
+        }
+
+        @Override
+        Caller<T> dependency(int index) {
+            return generator.apply(index);
+        }
+
+        @Override
+        void prepare(StackFrame<T> frame) {
+            frame.args = new ArrayList<>(count);
+        }
+
+        @Override
+        Caller<T> nextDependency(StackFrame<T> frame) {
+            if (frame.index >= count) {
+                return null;
+            }
+            return generator.apply(frame.index++);
+        }
+
+        @Override
+        Caller<T> leanCopy() {
+            ListGenerator<T> copy = type == CallerType.FUNCTION ? ListGenerator.copy(generator) : null;
+            return copy == null ? null : withGenerator(copy);
+        }
+
+        /**
+         * @param generator
+         * @return same caller with other generator
+         */
+        GeneratedCaller<T> withGenerator(CheckedIntFunction<Caller<T>> generator) {
+            return new GeneratedCaller<>(type, count, generator, (CheckedFunction<CastList<T>, Caller<T>>) call);
+        }
+
+        @Override
+        void releaseConsumed(StackFrame<T> frame) {
+            ListGenerator.release(generator, frame.index - 1);
+        }
+
+        @Override
+        void releaseDependencies() {
+            ListGenerator.releaseAll(generator);
+        }
+
+    }
+
+    /**
+     * Generator of dependencies from a list, so that lean resolution can
+     * release consumed ones.
+     *
+     * @param <T>
+     */
+    static class ListGenerator<T> implements CheckedIntFunction<Caller<T>> {
+
+        private static final long serialVersionUID = 1L;
+
+        final ArrayList<Caller<T>> list;
+
+        ListGenerator(Collection<Caller<T>> list) {
+            this.list = new ArrayList<>(list);
+        }
+
+        @Override
+        public Caller<T> applyUnchecked(int i) {
+            return list.get(i);
+        }
+
+        /**
+         * @param <T>
+         * @param generator
+         * @return copy of list generator or {@code null} for other generators,
+         * which have nothing to release
+         */
+        static <T> ListGenerator<T> copy(CheckedIntFunction<Caller<T>> generator) {
+            return generator instanceof ListGenerator ? new ListGenerator<>(((ListGenerator<T>) generator).list) : null;
+        }
+
+        static void release(CheckedIntFunction<?> generator, int index) {
+            if (generator instanceof ListGenerator && index >= 0) {
+                ((ListGenerator<?>) generator).list.set(index, null);
+            }
+        }
+
+        static void releaseAll(CheckedIntFunction<?> generator) {
+            if (generator instanceof ListGenerator) {
+                Collections.fill(((ListGenerator<?>) generator).list, null);
+            }
+        }
+    }
+
+    /**
+     * Caller, which folds each dependency result into an accumulator as soon
+     * as it is resolved, so only the accumulator is kept in a frame.
+     *
+     * @param <T>
+     * @param <A> accumulator type
+     */
+    static class FoldCaller<T, A> extends GeneratedCaller<T> {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final A initial;
+        protected final CheckedBiFunction<A, T, A> accumulator;
+        protected final CheckedFunction<A, Caller<T>> finisher;
+
+        FoldCaller(CallerType type, int count, CheckedIntFunction<Caller<T>> generator, A initial, CheckedBiFunction<A, T, A> accumulator, CheckedFunction<A, Caller<T>> finisher) {
+            super(type, count, generator, null);
+            this.initial = initial;
+            this.accumulator = accumulator;
+            this.finisher = finisher;
+        }
+
+        @Override
+        void prepare(StackFrame<T> frame) {
+            frame.args = null;
+            frame.state = initial;
+        }
+
+        @Override
+        void accept(StackFrame<T> frame, int position, T arg) {
+            frame.state = accumulator.apply((A) frame.state, arg);
+        }
+
+        @Override
+        Caller<T> invoke(StackFrame<T> frame) {
+            return finisher.apply((A) frame.state);
+        }
+
+        @Override
+        GeneratedCaller<T> withGenerator(CheckedIntFunction<Caller<T>> generator) {
+            return new FoldCaller<>(type, count, generator, initial, accumulator, finisher);
+        }
+
+    }
+
+    /**
+     * Caller, which reduces dependency results with associative combiner.
+     * Single-threaded reduction happens left to right, as soon as each result
+     * is resolved. When dependencies are forked, adjacent results are combined
+     * pairwise in parallel as they arrive.
+     *
+     * @param <T>
+     */
+    static class ReduceCaller<T> extends GeneratedCaller<T> {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final CheckedBiFunction<T, T, T> combiner;
+        protected final CheckedFunction<T, Caller<T>> finisher;
+
+        ReduceCaller(CallerType type, int count, CheckedIntFunction<Caller<T>> generator, CheckedBiFunction<T, T, T> combiner, CheckedFunction<T, Caller<T>> finisher) {
+            super(type, count, generator, null);
+            this.combiner = combiner;
+            this.finisher = finisher;
+        }
+
+        @Override
+        CheckedBiFunction<T, T, T> associativeCombiner() {
+            return combiner;
+        }
+
+        @Override
+        void prepare(StackFrame<T> frame) {
+            frame.args = null;
+        }
+
+        @Override
+        void accept(StackFrame<T> frame, int position, T arg) {
+            frame.arg0 = position == 0 ? arg : combiner.apply(frame.arg0, arg);
+        }
+
+        @Override
+        Caller<T> invoke(StackFrame<T> frame) {
+            return finisher.apply(frame.arg0);
+        }
+
+        @Override
+        GeneratedCaller<T> withGenerator(CheckedIntFunction<Caller<T>> generator) {
+            return new ReduceCaller<>(type, count, generator, combiner, finisher);
+        }
+
+    }
+
+    /**
+     * Caller, which takes its value from a memoized caller and decides how
+     * long that value is retained.
+     *
+     * @param <T>
+     */
+    static abstract class RetainingCaller<T> extends Caller<T> {
+
+        private static final long serialVersionUID = 1L;
+
+        RetainingCaller() {
+            super(CallerType.FUNCTION, null, null, null);
+        }
+
+        /**
+         * @return new memoized caller of the value
+         */
+        abstract Caller<T> newMemo();
+
+        /**
+         * @return memoized caller or retained result
+         */
+        abstract Caller<T> current();
+
+        /**
+         * Value was taken by a consumer from given caller.
+         *
+         * @param source
+         * @param value
+         */
+        abstract void taken(Caller<T> source, T value);
+
+        @Override
+        boolean hasDependencies() {
+            return true;
+        }
+
+        @Override
+        int dependencyCount() {
+            return 1;
+        }
+
+        @Override
+        Caller<T> dependency(int index) {
+            if (index == 0) {
+                return current();
+            }
+            throw new IndexOutOfBoundsException(index + " size:1");
+        }
+
+        @Override
+        void prepare(StackFrame<T> frame) {
+            frame.args = null;
+        }
+
+        @Override
+        Caller<T> nextDependency(StackFrame<T> frame) {
+            if (frame.index >= 1) {
+                return null;
+            }
+            frame.index++;
+            Caller<T> source = current();
+            frame.state = source;
+            return source;
+        }
+
+        @Override
+        void accept(StackFrame<T> frame, int position, T arg) {
+            frame.arg0 = arg;
+        }
+
+        @Override
+        Caller<T> invoke(StackFrame<T> frame) {
+            taken((Caller<T>) frame.state, frame.arg0);
+            return Caller.ofResult(frame.arg0);
+        }
+
+        @Override
+        Caller<T> leanCopy() {
+            return null; // memoized source is shared by consumers, so it is kept
+        }
+
+    }
+
+    /**
+     * Memoized value, which is released after given amount of consumers took
+     * it.
+     *
+     * @param <T>
+     */
+    static class CountedMemoCaller<T> extends RetainingCaller<T> {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final Caller<T> computation;
+        protected final int consumers;
+        protected final AtomicInteger remaining;
+        protected volatile Caller<T> memo;
+
+        CountedMemoCaller(Caller<T> computation, int consumers) {
+            this.computation = computation;
+            this.consumers = consumers;
+            this.remaining = new AtomicInteger(consumers);
+            this.memo = newMemo();
+        }
+
+        @Override
+        Caller<T> newMemo() {
+            return Caller.ofUnaryMemo(computation, serializable(Caller::ofResult));
+        }
+
+        @Override
+        Caller<T> current() {
+            Caller<T> current = memo;
+            if (current == null) {
+                throw new CallerException("Memoized value was released after " + consumers + " consumers");
+            }
+            return current;
+        }
+
+        @Override
+        void taken(Caller<T> source, T value) {
+            if (remaining.decrementAndGet() == 0) {
+                memo = null;
+            }
+        }
+
+    }
+
+    /**
+     * Memoized value, which is only softly reachable after it is computed,
+     * and is computed again if it was collected.
+     *
+     * @param <T>
+     */
+    static class SoftMemoCaller<T> extends RetainingCaller<T> {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final Object NULL = new Object();
+
+        protected final Caller<T> computation;
+        protected final AtomicReference<Caller<T>> memo = new AtomicReference<>();
+        protected transient volatile SoftReference<Object> soft;
+
+        SoftMemoCaller(Caller<T> computation) {
+            this.computation = computation;
+        }
+
+        @Override
+        Caller<T> newMemo() {
+            return Caller.ofUnaryMemo(computation, serializable(Caller::ofResult));
+        }
+
+        @Override
+        Caller<T> current() {
+            SoftReference<Object> ref = soft;
+            Object value = ref == null ? null : ref.get();
+            if (value != null) {
+                return Caller.ofResult(value == NULL ? null : (T) value);
+            }
+            Caller<T> current = memo.get();
+            while (current == null) {
+                memo.compareAndSet(null, newMemo());
+                current = memo.get();
+            }
+            return current;
+        }
+
+        @Override
+        void taken(Caller<T> source, T value) {
+            if (source.type == CallerType.MEMOIZING) {
+                soft = new SoftReference<>(value == null ? NULL : value);
+                memo.compareAndSet(source, null);
+            }
+        }
+
+    }
+
+    /**
+     * Computation of a {@link CallerNode}, which records the node as a
+     * dependent of every node or cell it takes as a dependency. Is not
+     * memoized itself, so it can be resolved again after invalidation.
+     *
+     * @param <T>
+     */
+    static class NodeComputation<T> extends Caller<T> {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final CallerNode<T> node;
+
+        NodeComputation(CallerNode<T> node, CheckedFunction<CastList<T>, Caller<T>> call, List<Caller<T>> inputs) {
+            super(CallerType.FUNCTION, null, call, inputs);
+            this.node = node;
+        }
+
+        private Caller<T> record(Caller<T> dep) {
+            if (dep instanceof CallerNode) {
+                ((CallerNode<T>) dep).dependents.add(node);
+            } else if (dep instanceof CallerCell) {
+                ((CallerCell<T>) dep).dependents.add(node);
+            }
+            return dep;
+        }
+
+        @Override
+        Caller<T> dependency(int index) {
+            return record(super.dependency(index));
+        }
+
+        @Override
+        Caller<T> nextDependency(StackFrame<T> frame) {
+            return record(super.nextDependency(frame));
+        }
+
+        @Override
+        Caller<T> leanCopy() {
+            return null; // inputs are kept, so node can be recomputed
+        }
+
+    }
+
+    /**
+     * Caller placeholder, which is replaced by a memoized caller of the same
+     * key from {@link CallerInterner} of current resolution. Is resolved as a
+     * regular function if it is not replaced.
+     *
+     * @param <T>
+     */
+    static class KeyedCaller<T> extends Caller<T> {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final Object key;
+        protected final Callable<Caller<T>> factory;
+
+        KeyedCaller(Object key, Callable<Caller<T>> factory) {
+            super(CallerType.FUNCTION, null, serializable(args -> factory.call()), null);
+            this.key = key;
+            this.factory = factory;
+        }
+
+    }
+
+    /**
+     * Resolve Caller with optional limits
+     *
+     * @param <T>
+     * @param caller
+     * @param interruptible check if interrupted before each call
+     * @param stackLimit limit of a stack size (each nested dependency expands
+     * stack by 1). Use non-positive to disable limit.
+     * @param callLimit limit of how many calls can be made (useful for endless
+     * recursion detection). Use non-positive to disable limit.
+     * @param forkCount how many fork levels to allow (uses recursion) amount of
+     * forks is determined by {@link Caller} dependencies
+     * @param exe executor
+     * @return
+     */
+    public static <T> T resolveThreaded(Caller<T> caller, boolean interruptible, int stackLimit, long callLimit, int forkCount, Executor exe) throws CheckedException {
+        return resolveThreaded(caller, new CallerResolve(exe, interruptible, stackLimit, callLimit, forkCount));
+    }
+
+    /**
+     * Resolve Caller with given arguments
+     *
+     * @param <T>
+     * @param caller
+     * @param args resolve arguments
+     * @return
+     */
+    public static <T> T resolveThreaded(Caller<T> caller, CallerResolve args) throws CheckedException {
+        try {
+            return resolveRoot(caller, args);
+        } catch (TimeoutException | InterruptedException | CancellationException | CompletionException | ExecutionException ex) {
+            throw new CheckedException(ex);
+        }
+
+    }
+
+    /**
+     * Continue resolution from a checkpoint file (see
+     * {@link CallerCheckpoint}). Fork count of arguments is ignored.
+     *
+     * @param <T>
+     * @param file checkpoint file
+     * @param args resolve arguments, if checkpoint is set, resumed resolution
+     * is checkpointed as well
+     * @return
+     */
+    public static <T> T resume(Path file, CallerResolve args) throws CheckedException {
+        try {
+            ThreadStack threadStack = args.interruptible ? new ThreadStack() : null;
+            return resolveCheckpointed(CallerCheckpoint.read(file), threadStack, args);
+        } catch (TimeoutException | InterruptedException | CancellationException | CompletionException | ExecutionException ex) {
+            throw new CheckedException(ex);
+        }
+    }
+
+    private static <T> T resolveRoot(Caller<T> caller, CallerResolve args) throws InterruptedException, CancellationException, TimeoutException, ExecutionException {
+        ThreadStack threadStack = args.interruptible ? new ThreadStack() : null;
+        if (args.spill != null) {
+            if (args.checkpoint != null) {
+                throw new IllegalArgumentException("Spilled stack can not be checkpointed");
+            }
+            try (CallerSpill.SpillStack<T> stack = args.spill.stack()) {
+                return resolveRecorded(caller, threadStack, new CallerLimits(args.stackLimit, args.callLimit, 0, 0), new Resolution(args), stack, new ArrayDeque<>());
+            }
+        }
+        if (args.checkpoint == null) {
+            return resolveRecorded(caller, threadStack, new CallerLimits(args.stackLimit, args.callLimit, args.forkCount, 0), new Resolution(args), new ArrayDeque<>(), new ArrayDeque<>());
+        }
+        CallerInterner interner = args.interner == null ? new CallerInterner() : args.interner;
+        return resolveCheckpointed(new CallerCheckpoint.State<>(0, interner, caller, new ArrayDeque<>(), new ArrayDeque<>()), threadStack, args);
+    }
+
+    private static <T> T resolveCheckpointed(CallerCheckpoint.State<T> state, ThreadStack threadStack, CallerResolve args) throws InterruptedException, CancellationException, TimeoutException, ExecutionException {
+        Resolution res = new Resolution(args, state.interner, state.callNumber);
+        T value = resolveRecorded(state.caller, threadStack, new CallerLimits(args.stackLimit, args.callLimit, 0, 0), res, state.stack, state.firstMemoizedStack);
+        if (args.checkpoint != null) {
+            args.checkpoint.delete();
+        }
+        return value;
+    }
+
+    /**
+     * Resolve as a single resolution event (see {@link CallerEvents}) and
+     * notify listener, if any.
+     */
+    private static <T> T resolveRecorded(Caller<T> caller, ThreadStack threadStack, CallerLimits limits, Resolution res,
+            Deque<StackFrame<T>> stack, Deque<Caller<T>> firstMemoizedStack) throws InterruptedException, CancellationException, TimeoutException, ExecutionException {
+        Object event = CallerEvents.resolutionBegin();
+        T value = null;
+        Throwable error = null;
+        try {
+            value = resolveThreadedInner(caller, threadStack, limits, res, stack, firstMemoizedStack);
+            return value;
+        } catch (Throwable t) {
+            error = t;
+            throw t;
+        } finally {
+            CallerEvents.resolutionEnd(event, res.callNumber.get(), res.maxDepth.get());
+            if (res.listener != null) {
+                res.listener.resolved(value, error);
+            }
+        }
+    }
+
+    /**
+     * Resolve every Caller as a dependency of a single root, so that keyed
+     * callers (see {@link Caller#ofKeyed}), call limit and forking are shared
+     * by the whole batch.
+     *
+     * @param <T>
+     * @param callers
+     * @param args resolve arguments
+     * @return results in the same order as callers
+     */
+    public static <T> List<T> resolveAll(Collection<Caller<T>> callers, CallerResolve args) throws CheckedException {
+        CheckedFunction<CastList<Object>, Caller<Object>> collect = results -> Caller.ofResult(results.asList());
+        Caller<Object> batch = new Caller<>(CallerType.FUNCTION, null, collect, new ArrayList(callers));
+        return (List<T>) resolveThreaded(batch, args);
+    }
+
+    /**
+     * Resolve a Caller of each item, while keeping at most given amount of
+     * resolutions in flight. Items are pulled from input only when there is a
+     * free slot, so memory usage depends only on concurrency.
+     *
+     * @param <R> input item type
+     * @param <T> result type
+     * @param input items
+     * @param func Caller of each item
+     * @param concurrency maximum amount of resolutions in flight
+     * @param ordered whether results keep input order, otherwise results are
+     * provided as soon as they are resolved
+     * @param args resolve arguments of each item
+     * @return lazy stream of results
+     */
+    public static <R, T> Stream<T> resolveStream(Iterator<R> input, CheckedFunction<R, Caller<T>> func, int concurrency, boolean ordered, CallerResolve args) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Concurrency must be positive, got " + concurrency);
+        }
+        StreamStage<R, T> stage = new StreamStage<>(input, func, concurrency, ordered, args);
+        int characteristics = ordered ? Spliterator.ORDERED : 0; // resolved value can be null
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(stage, characteristics), false)
+                .onClose(stage::cancel);
+    }
+
+    static class StreamStage<R, T> implements Iterator<T> {
+
+        final Iterator<R> input;
+        final CheckedFunction<R, Caller<T>> func;
+        final int concurrency;
+        final boolean ordered;
+        final CallerResolve args;
+        /**
+         * Submitted resolutions in input order.
+         */
+        final ArrayDeque<FutureTask<T>> inFlight;
+        /**
+         * Done resolutions in completion order. Only used when unordered.
+         */
+        final LinkedBlockingQueue<FutureTask<T>> done;
+
+        StreamStage(Iterator<R> input, CheckedFunction<R, Caller<T>> func, int concurrency, boolean ordered, CallerResolve args) {
+            this.input = input;
+            this.func = func;
+            this.concurrency = concurrency;
+            this.ordered = ordered;
+            this.args = args;
+            this.inFlight = new ArrayDeque<>(concurrency);
+            this.done = ordered ? null : new LinkedBlockingQueue<>();
+        }
+
+        private void fill() {
+            while (inFlight.size() < concurrency && input.hasNext()) {
+                Callable<T> resolve = resolveCallable(func.apply(input.next()), args);
+                FutureTask<T> task;
+                if (ordered) {
+                    task = new FutureTask<>(resolve);
+                } else {
+                    task = new FutureTask<T>(resolve) {
+                        @Override
+                        protected void done() {
+                            StreamStage.this.done.add(this);
+                        }
+                    };
+                }
+                inFlight.addLast(task);
+                args.executor.execute(task);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            fill();
+            return !inFlight.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            FutureTask<T> task;
+            try {
+                if (ordered) {
+                    task = inFlight.pollFirst();
+                } else {
+                    task = done.take();
+                    inFlight.remove(task);
+                }
+                return task.get();
+            } catch (InterruptedException ex) {
+                cancel();
+                throw new CheckedException(ex);
+            } catch (ExecutionException ex) {
+                // fail the same way as resolveThreaded
+                cancel();
+                Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new CheckedException(cause);
+            }
+        }
+
+        public void cancel() {
+            for (FutureTask<T> task : inFlight) {
+                task.cancel(true);
+            }
+            inFlight.clear();
+        }
+
+    }
+
+    /**
+     * Resolve Caller with optional limits as a FutureTask
+     *
+     * @param <T>
+     * @param caller
+     * @param interruptible check if interrupted before each call
+     * @param stackLimit limit of a stack size (each nested dependency expands
+     * stack by 1). Use non-positive to disable limit.
+     * @param callLimit limit of how many calls can be made (useful for endless
+     * recursion detection). Use non-positive to disable limit.
+     * @param forkCount how many fork levels to allow (uses recursion) amount of
+     * forks is determined by {@link Caller} dependencies
+     * @param exe executor
+     * @return
+     */
+    public static <T> FutureTask<T> resolveFuture(Caller<T> caller, boolean interruptible, int stackLimit, long callLimit, int forkCount, Executor exe) {
+        return resolveFuture(caller, new CallerResolve(exe, interruptible, stackLimit, callLimit, forkCount));
+    }
+
+    /**
+     * Resolve Caller with given arguments as a FutureTask
+     *
+     * @param <T>
+     * @param caller
+     * @param args resolve arguments
+     * @return
+     */
+    public static <T> FutureTask<T> resolveFuture(Caller<T> caller, CallerResolve args) {
+        return new FutureTask<>(resolveCallable(caller, args));
+    }
+
+    static <T> Callable<T> resolveCallable(Caller<T> caller, CallerResolve args) {
+        return () -> resolveRoot(caller, args);
+    }
+
+    /**
+     * Resolve Caller in provided executor without blocking on asynchronous
+     * leaves (see {@link Caller#ofAsync}). When every dependency of a frame
+     * is resolved except pending asynchronous ones, resolution is suspended
+     * and continued in executor after they complete. Never forks.
+     *
+     * Cancelling returned future stops resolution at next suspension.
+     *
+     * @param <T>
+     * @param caller
+     * @param args resolve arguments
+     * @return
+     */
+    public static <T> CompletableFuture<T> resolveAsync(Caller<T> caller, CallerResolve args) {
+        AsyncResolution<T> resolution = new AsyncResolution<>(caller, args);
+        args.executor.execute(resolution);
+        return resolution.result;
+    }
+
+    /**
+     * Frame, which waits for batched values, is parked in its parent frame,
+     * so that the rest of parent dependencies are expanded and queue their
+     * keys too. Frame, which can not be parked (no deferrable parent or it
+     * computes memoized values), dispatches every queued batch it waits for
+     * and then resumes parked frames one by one.
+     *
+     * @param <T>
+     * @param stack
+     * @param frame last frame with every dependency reached
+     * @return whether stack was changed
+     */
+    static <T> boolean batchStep(Deque<StackFrame<T>> stack, StackFrame<T> frame) {
+        Deferred<T> d = frame.deferred;
+        if (d == null || !d.batched) {
+            return false;
+        }
+        int parked = d.nextParked();
+        if (parked >= 0) {
+            d.cursor = parked + 1;
+            d.resuming = parked;
+            stack.addLast(((Parked<T>) d.slots.get(parked)).frame);
+            return true;
+        }
+        if (!d.waiting()) {
+            return false;
+        }
+        d.cursor = 0;
+        if (frame.memoizingStack == null || frame.memoizingStack.isEmpty()) {
+            stack.pollLast();
+            StackFrame<T> parent = stack.peekLast();
+            if (parent != null && parent.call.deferrable()) {
+                parent.park(frame);
+                return true;
+            }
+            stack.addLast(frame);
+        }
+        d.dispatch();
+        return true;
+    }
+
+    static class AsyncResolution<T> implements Runnable {
+
+        final Caller<T> caller;
+        final CallerResolve args;
+        final Resolution res;
+        final CallerLimits limits;
+        final Deque<StackFrame<T>> stack = new ArrayDeque<>();
+        final Deque<Caller<T>> firstMemoizedStack = new ArrayDeque<>();
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        AsyncResolution(Caller<T> caller, CallerResolve args) {
+            this.caller = caller;
+            this.args = args;
+            this.res = new Resolution(args, args.interner == null ? new CallerInterner() : args.interner, 0, true);
+            this.limits = new CallerLimits(args.stackLimit, args.callLimit, 0, 0);
+            Object event = CallerEvents.resolutionBegin();
+            result.whenComplete((v, e) -> {
+                CallerEvents.resolutionEnd(event, res.callNumber.get(), res.maxDepth.get());
+                if (res.listener != null) {
+                    res.listener.resolved(v, e);
+                }
+            });
+        }
+
+        @Override
+        public void run() {
+            if (result.isDone()) { // cancelled
+                return;
+            }
+            try {
+                ThreadStack threadStack = args.interruptible ? new ThreadStack() : null;
+                result.complete(resolveThreadedInner(caller, threadStack, limits, res, stack, firstMemoizedStack));
+            } catch (Suspension suspension) {
+                suspension.future.whenComplete((v, e) -> res.exe.execute(this));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }
+    }
+
+    /**
+     * Retrieves items one by one, each time creating new call. Just constructs
+     * appropriate functions for {@link #ofWhileLoop}.
+     *
+     * Recommended to not use directly for readability. Use
+     * {@link CallerForBuilder}.
+     *
+     * @param <T> the main type of Caller product
+     * @param <R> type that iteration happens
+     * @param emptyCase Caller when iterator is empty or not terminated anywhere
+     * @param iterator ReadOnlyIterator that has items
+     * @param func BiFunction that provides Caller that eventually results in T
+     * type result. Used to make recursive calls from all items.
+     * @param contFunc BiFunction that checks wether to end iteration in the
+     * middle of it and how
+     * @return
+     */
+    public static <T, R> Caller<T> ofIteratorLazy(Caller<T> emptyCase, IndexedIterator<R> iterator, CheckedBiFunction<Integer, R, Caller<T>> func, CheckedBiFunction<Integer, T, CallerFlowControl<T>> contFunc) {
+        return ofIteratorLazyInt(emptyCase, iterator, func::applyUnchecked, contFunc::applyUnchecked);
+    }
+
+    /**
+     * Same as {@link #ofIteratorLazy}, but index is never boxed.
+     *
+     * @param <T> the main type of Caller product
+     * @param <R> type that iteration happens
+     * @param emptyCase Caller when iterator is empty or not terminated anywhere
+     * @param iterator ReadOnlyIterator that has items
+     * @param func function that provides Caller that eventually results in T
+     * type result. Used to make recursive calls from all items.
+     * @param contFunc function that checks wether to end iteration in the
+     * middle of it and how
+     * @return
+     */
+    public static <T, R> Caller<T> ofIteratorLazyInt(Caller<T> emptyCase, IndexedIterator<R> iterator, CheckedIntObjFunction<R, Caller<T>> func, CheckedIntObjFunction<T, CallerFlowControl<T>> contFunc) {
+
+        return ofWhileLoop(
+                emptyCase,
+                iterator::hasNext,
+                () -> {
+                    R next = iterator.next();
+                    return func.apply(iterator.getCurrentIndex(), next);
+                },
+                item -> contFunc.apply(iterator.getCurrentIndex(), item)
+        );
+
+    }
+
+    /**
+     * Retrieves items one by one by index from random access {@link List},
+     * each time creating new call. No iterator is used and index is never
+     * boxed.
+     *
+     * Recommended to not use directly for readability. Use
+     * {@link CallerForBuilder}.
+     *
+     * @param <T> the main type of Caller product
+     * @param <R> type that iteration happens
+     * @param emptyCase Caller when list is empty or not terminated anywhere
+     * @param list random access list that has items
+     * @param func function that provides Caller that eventually results in T
+     * type result. Used to make recursive calls from all items.
+     * @param contFunc function that checks wether to end iteration in the
+     * middle of it and how
+     * @return
+     */
+    public static <T, R> Caller<T> ofListLoop(Caller<T> emptyCase, List<R> list, CheckedIntObjFunction<R, Caller<T>> func, CheckedIntObjFunction<T, CallerFlowControl<T>> contFunc) {
+        return new ListLoopCaller<>(emptyCase, list, func, contFunc);
+    }
+
+    /**
+     * Iterates over {@code long} range {@code [from, to)} with given step,
+     * each time creating new call. Index is never boxed.
+     *
+     * Recommended to not use directly for readability. Use
+     * {@link CallerForRangeBuilder}.
+     *
+     * @param <T> the main type of Caller product
+     * @param emptyCase Caller when range is empty or not terminated anywhere
+     * @param from first index (inclusive)
+     * @param to last index (exclusive)
+     * @param step positive index increment
+     * @param func function that provides Caller that eventually results in T
+     * type result. Used to make recursive calls from all indices.
+     * @param contFunc function that checks wether to end iteration in the
+     * middle of it and how
+     * @return
+     */
+    public static <T> Caller<T> ofRangeLoop(Caller<T> emptyCase, long from, long to, long step, CheckedLongFunction<Caller<T>> func, CheckedLongObjFunction<T, CallerFlowControl<T>> contFunc) {
+        if (step <= 0) {
+            throw new IllegalArgumentException("Step must be positive, got " + step);
+        }
+        return new RangeLoopCaller<>(emptyCase, from, to, step, func, contFunc);
+    }
+
+    /**
+     * Retrieves items all at once and creates dependency calls for each item,
+     * which then can be executed in parallel if need be. After all items are
+     * retrieved, executed a regular {@code for} loop with those items.
+     * Recommended to use only if every item need to evaluated anyway and order
+     * of evaluation does not matter.
+     *
+     * Recommended to not use directly for readability. Use
+     * {@link CallerForBuilderBulk}.
+     *
+     * @param <T> the main type of Caller product
+     * @param <R> type that iteration happens
+     * @param emptyCase Caller when iterator is empty or not terminated anywhere
+     * @param iterator ReadOnlyIterator that has items
+     * @param func BiFunction that provides Caller that eventually results in T
+     * type result. Used to make recursive calls from all items.
+     * @param contFunc BiFunction that checks wether to end iteration in the
+     * middle of it and how
+     * @return
+     */
+    public static <T, R> Caller<T> ofIteratorLazyBulk(Caller<T> emptyCase, IndexedIterator<R> iterator, BiFunction<Integer, R, Caller<T>> func, CheckedBiFunction<Integer, T, CallerFlowControl<T>> contFunc) {
+        return ofIteratorLazyBulkInt(emptyCase, iterator, func::apply, contFunc::applyUnchecked);
+    }
+
+    /**
+     * Same as {@link #ofIteratorLazyBulk}, but index is never boxed.
+     *
+     * @param <T> the main type of Caller product
+     * @param <R> type that iteration happens
+     * @param emptyCase Caller when iterator is empty or not terminated anywhere
+     * @param iterator ReadOnlyIterator that has items
+     * @param func function that provides Caller that eventually results in T
+     * type result. Used to make recursive calls from all items.
+     * @param contFunc function that checks wether to end iteration in the
+     * middle of it and how
+     * @return
+     */
+    public static <T, R> Caller<T> ofIteratorLazyBulkInt(Caller<T> emptyCase, IndexedIterator<R> iterator, CheckedIntObjFunction<R, Caller<T>> func, CheckedIntObjFunction<T, CallerFlowControl<T>> contFunc) {
+
+        CallerBuilder<T> b = new CallerBuilder<>();
+
+        while (iterator.hasNext()) {
+            R value = iterator.next();
+            int index = iterator.getCurrentIndex();
+            b.with(args -> func.apply(index, value));
+        }
+
+        return b.toCall(args -> {
+            for (int i = 0; i < args.parameterCount; i++) {
+                T arg = args.get(i);
+                CallerFlowControl<T> apply = contFunc.apply(i, arg);
+                if (apply.flowControl == CallerForType.CONTINUE) { // assume this to be the must common response
+                    continue;
+                }
+                if (apply.flowControl == CallerForType.RETURN) {
+                    return apply.caller;
+                }
+                if (apply.flowControl == CallerForType.BREAK) {
+                    break;
+                }
+                throw new IllegalStateException("Unregocnized flow control statement " + apply.flowControl);
+
+            }
+            return emptyCase;
+        });
+
+    }
+
+    /**
+     * Models do while loop.
+     *
+     * Recommended to not use directly for readability. Use
+     * {@link CallerDoWhileBuilder}.
+     *
+     * @param <T> the main type of Caller product
+     * @param emptyCase Caller when iterator is empty of not terminated anywhere
+     * @param condition whether to continue the loop
+     * @param func main recursive call of the loop
+     * @param contFunc how to continue with recursive call result
+     * @return
+     */
+    public static <T> Caller<T> ofDoWhileLoop(Caller<T> emptyCase, Callable<Boolean> condition, Callable<Caller<T>> func, CheckedFunction<T, CallerFlowControl<T>> contFunc) {
+        return new LoopCaller<>(emptyCase, condition, func, contFunc, true);
+    }
+
+    /**
+     * Models while loop.
+     *
+     * @param <T> the main type of Caller product
+     * @param emptyCase Caller when iterator is empty of not terminated anywhere
+     * @param condition whether to continue the loop
+     * @param func main recursive call of the loop
+     * @param contFunc how to continue with recursive call result
+     * @return
+     */
+    public static <T> Caller<T> ofWhileLoop(Caller<T> emptyCase, Callable<Boolean> condition, Callable<Caller<T>> func, CheckedFunction<T, CallerFlowControl<T>> contFunc) {
+        return new LoopCaller<>(emptyCase, condition, func, contFunc, false);
+    }
+
+    /**
+     * Loop, that is iterated in place inside a single stack frame. Each
+     * iteration result is a dependency, which is evaluated as soon as it is
+     * resolved. Frame state is used to store loop exit {@link Caller}.
+     *
+     * @param <T>
+     */
+    static abstract class AbstractLoopCaller<T> extends Caller<T> {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final Caller<T> afterwards;
+
+        AbstractLoopCaller(Caller<T> afterwards) {
+            super(CallerType.FUNCTION, null, null, null);
+            this.afterwards = afterwards;
+        }
+
+        /**
+         * @param frame
+         * @return whether to do another iteration
+         * @throws Exception
+         */
+        abstract boolean hasNext(StackFrame<T> frame) throws Exception;
+
+        /**
+         * @param frame
+         * @return iteration call
+         * @throws Exception
+         */
+        abstract Caller<T> next(StackFrame<T> frame) throws Exception;
+
+        /**
+         * @param frame
+         * @param arg iteration call result
+         * @return how to proceed
+         */
+        abstract CallerFlowControl<T> evaluate(StackFrame<T> frame, T arg);
+
+        /**
+         * @return whether each iteration counts toward call limit
+         */
+        boolean countsIterations() {
+            return true;
+        }
+
+        @Override
+        boolean hasDependencies() {
+            return true;
+        }
+
+        @Override
+        int dependencyCount() {
+            return 0;
+        }
+
+        @Override
+        boolean deferrable() {
+            return false;
+        }
+
+        @Override
+        void prepare(StackFrame<T> frame) {
+            frame.args = null;
+        }
+
+        @Override
+        Caller<T> nextDependency(StackFrame<T> frame) {
+            if (frame.state != null) { // exited
+                return null;
+            }
+            try {
+                if (!hasNext(frame)) {
+                    frame.state = afterwards;
+                    return null;
+                }
+                return next(frame);
+            } catch (Exception ex) {
+                throw new CheckedException(ex);
+            }
+        }
+
+        @Override
+        void accept(StackFrame<T> frame, int position, T arg) {
+            CallerFlowControl<T> flow = evaluate(frame, arg);
+            switch (flow.flowControl) {
+                case CONTINUE: // this should be the most common
+                    return;
+                case RETURN:
+                    frame.state = flow.caller;
+                    return;
+                case BREAK:
+                    frame.state = afterwards;
+                    return;
+                default:
+                    throw new IllegalStateException("Unregocnized flow control statement " + flow.flowControl);
+            }
+        }
+
+        @Override
+        Caller<T> invoke(StackFrame<T> frame) {
+            return (Caller<T>) frame.state;
+        }
+
+    }
+
+    /**
+     * {@code while} and {@code do while} loop.
+     *
+     * @param <T>
+     */
+    static class LoopCaller<T> extends AbstractLoopCaller<T> {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final Callable<Boolean> condition;
+        protected final Callable<Caller<T>> body;
+        protected final CheckedFunction<T, CallerFlowControl<T>> evaluate;
+        protected final boolean doWhile;
+
+        LoopCaller(Caller<T> afterwards, Callable<Boolean> condition, Callable<Caller<T>> body, CheckedFunction<T, CallerFlowControl<T>> evaluate, boolean doWhile) {
+            super(afterwards);
+            this.condition = condition;
+            this.body = body;
+            this.evaluate = evaluate;
+            this.doWhile = doWhile;
+        }
+
+        @Override
+        boolean hasNext(StackFrame<T> frame) throws Exception {
+            if (doWhile && frame.index == 0) {
+                frame.index = 1;
+                return true;
+            }
+            return condition.call();
+        }
+
+        @Override
+        Caller<T> next(StackFrame<T> frame) throws Exception {
+            return body.call();
+        }
+
+        @Override
+        CallerFlowControl<T> evaluate(StackFrame<T> frame, T arg) {
+            return evaluate.apply(arg);
+        }
+
+    }
+
+    /**
+     * {@code for} loop over random access {@link List} driven by
+     * {@code int} index, which is stored in a frame.
+     *
+     * @param <T>
+     * @param <R>
+     */
+    static class ListLoopCaller<T, R> extends AbstractLoopCaller<T> {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final List<R> list;
+        protected final CheckedIntObjFunction<R, Caller<T>> body;
+        protected final CheckedIntObjFunction<T, CallerFlowControl<T>> evaluate;
+
+        ListLoopCaller(Caller<T> afterwards, List<R> list, CheckedIntObjFunction<R, Caller<T>> body, CheckedIntObjFunction<T, CallerFlowControl<T>> evaluate) {
+            super(afterwards);
+            this.list = list;
+            this.body = body;
+            this.evaluate = evaluate;
+        }
+
+        @Override
+        boolean hasNext(StackFrame<T> frame) {
+            return frame.index < list.size();
+        }
+
+        @Override
+        Caller<T> next(StackFrame<T> frame) {
+            int i = frame.index;
+            return body.apply(i, list.get(i));
+        }
+
+        @Override
+        CallerFlowControl<T> evaluate(StackFrame<T> frame, T arg) {
+            return evaluate.apply(frame.index++, arg);
+        }
+
+    }
+
+    /**
+     * {@code for} loop over {@code long} range driven by index, which is stored
+     * in a frame.
+     *
+     * @param <T>
+     */
+    static class RangeLoopCaller<T> extends AbstractLoopCaller<T> {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final long from;
+        protected final long to;
+        protected final long step;
+        protected final CheckedLongFunction<Caller<T>> body;
+        protected final CheckedLongObjFunction<T, CallerFlowControl<T>> evaluate;
+
+        RangeLoopCaller(Caller<T> afterwards, long from, long to, long step, CheckedLongFunction<Caller<T>> body, CheckedLongObjFunction<T, CallerFlowControl<T>> evaluate) {
+            super(afterwards);
+            this.from = from;
+            this.to = to;
+            this.step = step;
+            this.body = body;
+            this.evaluate = evaluate;
+        }
+
+        @Override
+        void prepare(StackFrame<T> frame) {
+            super.prepare(frame);
+            frame.counter = from;
+        }
+
+        @Override
+        boolean hasNext(StackFrame<T> frame) {
+            return frame.counter < to;
+        }
+
+        @Override
+        Caller<T> next(StackFrame<T> frame) {
+            return body.apply(frame.counter);
+        }
+
+        @Override
+        CallerFlowControl<T> evaluate(StackFrame<T> frame, T arg) {
+            long i = frame.counter;
+            // distance as unsigned, so that the whole long range never overflows
+            frame.counter = Long.compareUnsigned(to - i, step) <= 0 ? to : i + step;
+            return evaluate.apply(i, arg);
+        }
+
+    }
+
+    /**
+     * Dependencies, of which the first result matching a predicate is the
+     * result. Resolved in order without forking, so the rest are skipped after
+     * a match. Forked dependencies race instead (see {@link #race}).
+     *
+     * @param <T>
+     */
+    static class RaceCaller<T> extends AbstractLoopCaller<T> {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final int count;
+        protected final CheckedIntFunction<Caller<T>> generator;
+        protected final CheckedFunction<T, Boolean> predicate;
+
+        RaceCaller(Caller<T> afterwards, int count, CheckedIntFunction<Caller<T>> generator, CheckedFunction<T, Boolean> predicate) {
+            super(afterwards);
+            this.count = count;
+            this.generator = generator;
+            this.predicate = predicate;
+        }
+
+        @Override
+        int dependencyCount() {
+            return count;
+        }
+
+        @Override
+        Caller<T> dependency(int index) {
+            return generator.apply(index);
+        }
+
+        @Override
+        boolean hasNext(StackFrame<T> frame) {
+            return frame.index < count;
+        }
+
+        @Override
+        Caller<T> next(StackFrame<T> frame) {
+            return generator.apply(frame.index);
+        }
+
+        @Override
+        boolean countsIterations() {
+            return false; // iterations are ordinary dependencies
+        }
+
+        @Override
+        CallerFlowControl<T> evaluate(StackFrame<T> frame, T arg) {
+            frame.index++;
+            return predicate.apply(arg) ? Caller.flowReturn(arg) : Caller.flowContinue();
+        }
+
+        @Override
+        Caller<T> leanCopy() {
+            ListGenerator<T> copy = ListGenerator.copy(generator);
+            return copy == null ? null : new RaceCaller<>(afterwards, count, copy, predicate);
+        }
+
+        @Override
+        void releaseConsumed(StackFrame<T> frame) {
+            ListGenerator.release(generator, frame.index - 1);
+        }
+
+        @Override
+        void releaseDependencies() {
+            ListGenerator.releaseAll(generator);
+        }
+
+    }
+
+    /**
+     * Fork every dependency of a race and wait for the first result, which
+     * matches the predicate, or for every result if none does. Remaining
+     * branches are cancelled together with their nested forks (see
+     * {@link CancelScope}).
+     *
+     * @return what to continue with
+     */
+    private static <T> Caller<T> race(RaceCaller<T> caller, ThreadStack threadStack, CallerLimits limits, Resolution res, Collection stack) throws InterruptedException, ExecutionException {
+        int count = caller.dependencyCount();
+        CancelScope group = limits.newScope();
+        CallerLimits newFork = limits.newFork(stack, group);
+        CompletableFuture<Caller<T>> winner = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger(count);
+        ArrayList<RunnableFuture<T>> array = new ArrayList<>(count);
+        winner.whenComplete((w, e) -> group.cancel(e)); // stop the rest as soon as possible
+        Object forkEvent = CallerEvents.forkBegin();
+        try {
+            for (int i = 0; i < count && !winner.isDone(); i++) {
+                Caller<T> c = res.canonical(caller.dependency(i));
+                CompletableFuture<T> branch;
+                if (c.type == CallerType.RESULT) {
+                    branch = CompletableFuture.completedFuture(c.value);
+                } else if (isMemoizedDone(c)) {
+                    branch = c.compl;
+                } else {
+                    branch = ((CompletingPromise<T>) fork(true, res, () -> {
+                        return resolveThreadedInner(c, ThreadStack.createOrReuse(threadStack), newFork, res);
+                    }).collect(array)).completion;
+                }
+                branch.whenComplete((v, e) -> {
+                    if (e != null) { // ignored, if already cancelled by a winner
+                        winner.completeExceptionally(e);
+                    } else {
+                        try {
+                            if (caller.predicate.apply(v)) {
+                                winner.complete(Caller.ofResult(v));
+                            }
+                        } catch (Throwable t) {
+                            winner.completeExceptionally(t);
+                        }
+                    }
+                    if (remaining.decrementAndGet() == 0) {
+                        winner.complete(caller.afterwards);
+                    }
+                });
+            }
+            for (RunnableFuture<T> pro : array) { // help with progress
+                if (winner.isDone()) {
+                    break;
+                }
+                pro.run();
+            }
+            return winner.get();
+        } catch (ExecutionException err) {
+            while (err.getCause() instanceof ExecutionException) {
+                err = (ExecutionException) err.getCause();
+            }
+            throw err;
+        } finally {
+            group.cancel(null);
+            group.close();
+            for (RunnableFuture<T> pro : array) {
+                pro.cancel(true);
+            }
+            CallerEvents.forkEnd(forkEvent, count);
+        }
+    }
+
+    private static <T> Promise<T> fork(boolean completing, Callable<T> call) {
+        return completing ? new CompletingPromise<>(call) : new Promise<>(call);
+    }
+
+    /**
+     * Submit a fork to executor if there is a free in-flight slot, otherwise
+     * leave it to be run inline by the waiting thread.
+     */
+    private static <T> Promise<T> fork(boolean completing, Resolution res, Callable<T> call) {
+        if (!res.acquireFork()) {
+            return fork(completing, call);
+        }
+        return fork(completing, () -> {
+            try {
+                return call.call();
+            } finally {
+                res.releaseFork();
+            }
+        }).execute(res.exe);
+    }
+
+    /**
+     * Balanced tree of combinations, where each pair of adjacent results is
+     * combined in given executor as soon as both results are done.
+     */
+    private static <T> CompletableFuture<T> reduceTree(ArrayList<RunnableFuture<T>> leaves, int from, int to, CheckedBiFunction<T, T, T> combiner, Executor exe) {
+        if (to - from == 1) {
+            RunnableFuture<T> leaf = leaves.get(from);
+            if (leaf instanceof CompletingPromise) {
+                return ((CompletingPromise<T>) leaf).completion;
+            }
+            if (leaf instanceof CompletablePromise) {
+                return ((CompletablePromise<T>) leaf).future;
+            }
+            return CompletableFuture.completedFuture(((ValuePromise<T>) leaf).value);
+        }
+        int mid = (from + to) >>> 1;
+        return reduceTree(leaves, from, mid, combiner, exe).thenCombineAsync(reduceTree(leaves, mid, to, combiner, exe), combiner, exe);
+    }
+
+    private static <T> T complete(Collection<Caller<T>> s, T value) {
+        if (s == null) {
+            return value;
+        }
+        for (Caller<T> call : s) {
+            call.compl.complete(value);
+        }
+        s.clear();
+        return value;
+    }
+
+    /**
+     * @return future of given memoized value, which also completes memoized
+     * callers, that now wait for it
+     */
+    private static <T> CompletableFuture<T> completeLater(Collection<Caller<T>> s, Caller<T> memo) {
+        if (s == null || s.isEmpty()) {
+            return memo.compl;
+        }
+        ArrayList<Caller<T>> memoized = new ArrayList<>(s);
+        s.clear();
+        for (Caller<T> call : memoized) {
+            call.owner = memo;
+        }
+        return memo.compl.handle((v, e) -> {
+            if (e != null) {
+                fail(memoized, e);
+                throw new CompletionException(e);
+            }
+            return complete(memoized, v);
+        });
+    }
+
+    private static <T> void fail(Collection<Caller<T>> s, Throwable error) {
+        if (s == null) {
+            return;
+        }
+        for (Caller<T> call : s) {
+            call.owner = null;
+            call.compl.completeExceptionally(error);
+        }
+        s.clear();
+    }
+
+    /**
+     * Fail every memoized caller, which failed resolution was computing, so
+     * that nobody waits for it (or mistakes its owner for a cycle).
+     */
+    private static <T> void failMemoized(Deque<StackFrame<T>> stack, Collection<Caller<T>> firstMemoizedStack, Throwable error) {
+        try {
+            fail(firstMemoizedStack, error);
+            ArrayDeque<StackFrame<T>> frames = new ArrayDeque<>();
+            while (!stack.isEmpty()) {
+                frames.add(stack.pollLast());
+                while (!frames.isEmpty()) {
+                    StackFrame<T> frame = frames.pollLast();
+                    fail(frame.memoizingStack, error);
+                    if (frame.deferred != null) {
+                        for (Object slot : frame.deferred.slots) {
+                            if (slot instanceof Parked) {
+                                frames.add(((Parked<T>) slot).frame);
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (Throwable t) {
+            error.addSuppressed(t);
+        }
+    }
+
+    /**
+     * Invoke user function of given caller, notifying listener.
+     *
+     * @param frame frame of dependencies, {@code null} if there are none
+     */
+    private static <T> Caller<T> invoke(CallerListener listener, Caller<T> caller, StackFrame<T> frame) {
+        Caller<T> next = null;
+        listener.invokeStart(caller);
+        try {
+            next = frame == null ? caller.call.apply(emptyArgs) : caller.invoke(frame);
+            return next;
+        } finally {
+            listener.invokeEnd(caller, next);
+        }
+    }
+
+    private static boolean isMemoizedDone(Caller c) {
+        return c.type == CallerType.MEMOIZING && c.compl.isDone();
+    }
+
+    private static boolean isMemoizedNotDone(Caller c) {
+        return c.type == CallerType.MEMOIZING && !c.compl.isDone();
+    }
+
+    private static <T> boolean runnerCAS(Caller<T> caller) {
+        return isMemoizedNotDone(caller) && caller.started.compareAndSet(false, true);
+    }
+
+    /**
+     * Owner of memoized callers, which blocks waiting for another memoized
+     * caller. Recorded as {@link Caller#owner} of every memoized caller the
+     * owner computes only when it blocks, so following owners gives the
+     * wait-for graph. Stale records end at a completed target.
+     */
+    static final class MemoWait {
+
+        /**
+         * Thread or asynchronous resolution
+         */
+        final Object who;
+        final Caller<?> target;
+
+        MemoWait(Object who, Caller<?> target) {
+            this.who = who;
+            this.target = target;
+        }
+    }
+
+    /**
+     * Wait for a memoized value, failing instead, if waiting would never end.
+     *
+     * @param memo memoized caller to wait for
+     * @param owner who waits
+     * @param stack stack of memoized callers the owner computes
+     * @param firstMemoizedStack memoized callers of empty stack, which the
+     * owner computes
+     */
+    static <T> T awaitMemo(Caller<T> memo, Object owner, Deque<StackFrame<T>> stack, Collection<Caller<T>> firstMemoizedStack) throws InterruptedException, ExecutionException {
+        if (memo.compl.isDone()) {
+            return memoValue(memo);
+        }
+        Object event = CallerEvents.memoWaitBegin();
+        try {
+            MemoWait wait = new MemoWait(owner, memo);
+            own(firstMemoizedStack, wait);
+            for (StackFrame<T> frame : stack) {
+                own(frame, wait);
+            }
+            if (stack instanceof CallerSpill.SpillStack) {
+                own(((CallerSpill.SpillStack<T>) stack).spilledMemoizing(), wait);
+            }
+            assertNoCycle(memo, owner);
+            return memoValue(memo);
+        } finally {
+            CallerEvents.memoWaitEnd(event);
+        }
+    }
+
+    private static <T> void own(StackFrame<T> frame, MemoWait wait) {
+        own(frame.memoizingStack, wait);
+        if (frame.deferred != null) {
+            for (Object slot : frame.deferred.slots) {
+                if (slot instanceof Parked) {
+                    own(((Parked<T>) slot).frame, wait);
+                }
+            }
+        }
+    }
+
+    private static <T> void own(Collection<Caller<T>> memoized, MemoWait wait) {
+        if (memoized != null) {
+            for (Caller<T> call : memoized) {
+                call.owner = wait;
+            }
+        }
+    }
+
+    private static <T> T memoValue(Caller<T> memo) throws InterruptedException, ExecutionException {
+        try {
+            return memo.compl.get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) { // fail as the computing resolution did (cycle included)
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Follow owners of unfinished memoized callers through what they wait
+     * for. Memoized callers of a detected cycle can never complete, so they
+     * fail with the same exception, which also wakes up other waiters.
+     *
+     * @param memo memoized caller to wait for
+     * @param owner who is going to wait
+     * @throws CallerException if the chain leads back to the owner or loops
+     */
+    static void assertNoCycle(Caller<?> memo, Object owner) {
+        ArrayList<Object> chain = new ArrayList<>();
+        ArrayList<Caller<?>> memos = new ArrayList<>();
+        chain.add(owner);
+        Caller<?> current = memo;
+        while (current != null && !current.compl.isDone()) {
+            memos.add(current);
+            Object o = current.owner;
+            if (o == null) { // not blocked, not started or restored
+                return;
+            }
+            Object who = o instanceof MemoWait ? ((MemoWait) o).who : o;
+            boolean loop = chain.contains(who);
+            chain.add(who);
+            if (loop) {
+                CallerException ex = new CallerException("Memoized callers wait for each other in a cycle: " + describe(chain));
+                for (Caller<?> m : memos) {
+                    m.compl.completeExceptionally(ex);
+                }
+                throw ex;
+            }
+            current = o instanceof Caller ? (Caller<?>) o : ((MemoWait) o).target;
+        }
+    }
+
+    private static String describe(List<Object> chain) {
+        StringBuilder sb = new StringBuilder();
+        for (Object o : chain) {
+            if (sb.length() > 0) {
+                sb.append(" -> ");
+            }
+            if (o instanceof Thread) {
+                sb.append(((Thread) o).getName());
+            } else if (o instanceof Resolution) {
+                sb.append("asynchronous resolution");
+            } else {
+                sb.append("memoized caller");
+            }
+        }
+        return sb.toString();
+    }
+
+    static final CastList emptyArgs = new CastList<>(null);
+
+    static class CallerLimits {
+
+        public final int stackLimit;
+        public final long callLimit;
+        public final int fork;
+        public final int prevStackSize;
+        public final CancelScope scope;
+
+        public CallerLimits(int stackLimit, long callLimit, int fork, int prevStackSize) {
+            this(stackLimit, callLimit, fork, prevStackSize, null);
+        }
+
+        public CallerLimits(int stackLimit, long callLimit, int fork, int prevStackSize, CancelScope scope) {
+            this.stackLimit = stackLimit;
+            this.callLimit = callLimit;
+            this.fork = fork;
+            this.prevStackSize = prevStackSize;
+            this.scope = scope;
+        }
+
+        public CallerLimits newFork(Collection stack, CancelScope scope) {
+            return new CallerLimits(stackLimit, callLimit, fork - 1, prevStackSize + stack.size(), scope);
+        }
+
+        /**
+         * @return new scope for a fork group, nested in current one
+         */
+        public CancelScope newScope() {
+            return scope == null ? new CancelScope(null) : scope.child();
+        }
+
+        public void assertNotCancelled() {
+            if (scope != null && scope.cancelled) {
+                throw new CancellationException("Caller has been cancelled");
+            }
+        }
+
+        public void assertCallLimit(Resolution res) {
+            AtomicLong current = res.callNumber;
+            if (callLimit > 0) {
+                long lim = current.getAndIncrement();
+                if (lim >= callLimit) {
+                    CallerEvents.limitReached("call", callLimit);
+                    throw new CallerException("Call limit reached " + lim);
+                }
+            } else if (res.recording) { // count calls anyway
+                current.incrementAndGet();
+            }
+        }
+
+        public void assertStackLimit(Collection stack) {
+            if (stackLimit > 0 && (prevStackSize + stackLimit) <= stack.size()) {
+                CallerEvents.limitReached("stack", stackLimit);
+                throw new CallerException("Stack limit overrun " + stack.size() + prevStackSize);
+            }
+        }
+    }
+
+    /**
+     * Cancellation scope of a fork group. Scopes mirror the fork tree, so
+     * cancelling a scope cancels every nested scope, and forks stop at their
+     * next call.
+     */
+    static class CancelScope {
+
+        final CancelScope parent;
+        final Set<CancelScope> children = ConcurrentHashMap.newKeySet();
+        volatile boolean cancelled;
+        /**
+         * First failure, which caused cancellation
+         */
+        Throwable failure;
+
+        CancelScope(CancelScope parent) {
+            this.parent = parent;
+        }
+
+        CancelScope child() {
+            CancelScope child = new CancelScope(this);
+            children.add(child);
+            if (cancelled) { // cancelled while adding
+                child.cancel(null);
+            }
+            return child;
+        }
+
+        /**
+         * Detach finished scope from its parent.
+         */
+        void close() {
+            if (parent != null) {
+                parent.children.remove(this);
+            }
+        }
+
+        /**
+         * Cancel this and every nested scope.
+         *
+         * @param cause failure to record, if this is the first cancellation
+         */
+        void cancel(Throwable cause) {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                failure = cause;
+                cancelled = true;
+            }
+            ArrayDeque<CancelScope> walk = new ArrayDeque<>(children);
+            while (!walk.isEmpty()) {
+                CancelScope s = walk.pollLast();
+                if (!s.cancelled) {
+                    s.cancelled = true;
+                    walk.addAll(s.children);
+                }
+            }
+        }
+
+        /**
+         * Run a fork, first failure of which cancels the scope.
+         */
+        <T> T run(Callable<T> call) throws Exception {
+            try {
+                return call.call();
+            } catch (Throwable t) {
+                cancel(t);
+                throw t;
+            }
+        }
+    }
+
+    /**
+     * State shared by every fork of a single resolution.
+     */
+    static class Resolution {
+
+        public final AtomicLong callNumber;
+        public final Executor exe;
+        public final CallerInterner interner;
+        public final CallerCheckpoint checkpoint;
+        public final CallerCheckpoint.Timer checkpointTimer;
+        public final CallerHeapGuard heapGuard;
+        public final int maxInFlightForks;
+        public final boolean lean;
+        public final boolean async;
+        public final CallerListener listener;
+        public final AtomicInteger inFlightForks = new AtomicInteger(0);
+        /**
+         * Whether resolution event was recorded, when this resolution began.
+         * Call count without call limit and maximum depth are only tracked
+         * if so.
+         */
+        public final boolean recording;
+        /**
+         * Only tracked if {@link #recording}
+         */
+        public final AtomicInteger maxDepth = new AtomicInteger(0);
+
+        public Resolution(CallerResolve args) {
+            this(args, args.interner == null ? new CallerInterner() : args.interner, 0);
+        }
+
+        public Resolution(CallerResolve args, CallerInterner interner, long callNumber) {
+            this(args, interner, callNumber, false);
+        }
+
+        public Resolution(CallerResolve args, CallerInterner interner, long callNumber, boolean async) {
+            this.async = async;
+            this.exe = args.executor;
+            this.interner = interner;
+            this.callNumber = new AtomicLong(callNumber);
+            this.checkpoint = args.checkpoint;
+            this.checkpointTimer = checkpoint == null ? null : checkpoint.timer();
+            this.heapGuard = args.heapGuard;
+            this.maxInFlightForks = args.maxInFlightForks;
+            this.lean = args.lean;
+            this.listener = args.listener;
+            this.recording = CallerEvents.recording();
+        }
+
+        public boolean canFork() {
+            if (maxInFlightForks > 0 && inFlightForks.get() >= maxInFlightForks) {
+                return false;
+            }
+            return heapGuard == null || heapGuard.canFork();
+        }
+
+        public boolean acquireFork() {
+            if (maxInFlightForks <= 0) {
+                return true;
+            }
+            while (true) {
+                int current = inFlightForks.get();
+                if (current >= maxInFlightForks) {
+                    return false;
+                }
+                if (inFlightForks.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        public void releaseFork() {
+            if (maxInFlightForks > 0) {
+                inFlightForks.decrementAndGet();
+            }
+        }
+
+        /**
+         * Called after each stack growth.
+         *
+         * @param stack
+         */
+        public void pushed(Collection stack) {
+            if (recording) {
+                int size = stack.size();
+                if (size > maxDepth.get()) {
+                    maxDepth.accumulateAndGet(size, Math::max);
+                }
+            }
+        }
+
+        public <T> Caller<T> canonical(Caller<T> caller) {
+            if (caller instanceof KeyedCaller) {
+                KeyedCaller<T> keyed = (KeyedCaller<T>) caller;
+                return interner.intern(keyed.key, keyed.factory);
+            }
+            return caller;
+        }
+    }
+
+    private static <T> T resolveThreadedInner(Caller<T> caller, ThreadStack threadStack, final CallerLimits limits, Resolution res) throws InterruptedException, CancellationException, TimeoutException, ExecutionException {
+        return resolveThreadedInner(caller, threadStack, limits, res, new ArrayDeque<>(), new ArrayDeque<>());
+    }
+
+    private static <T> T resolveThreadedInner(Caller<T> caller, ThreadStack threadStack, final CallerLimits limits, Resolution res,
+            Deque<StackFrame<T>> stack, Deque<Caller<T>> firstMemoizedStack) throws InterruptedException, CancellationException, TimeoutException, ExecutionException {
+        try {
+            return res.listener == null
+                    ? resolveLoop(caller, threadStack, limits, res, stack, firstMemoizedStack)
+                    : resolveListenedLoop(caller, threadStack, limits, res, stack, firstMemoizedStack);
+        } catch (Suspension suspension) { // not a failure, continued later
+            throw suspension;
+        } catch (Throwable t) {
+            failMemoized(stack, firstMemoizedStack, t);
+            throw t;
+        }
+    }
+
+    /**
+     * Resolve every dependency of a frame in forks and collect the results.
+     *
+     * @param listener listener of resolution steps, {@code null} if there is
+     * none
+     */
+    private static <T> void forkDependencies(StackFrame<T> frame, ThreadStack threadStack, CallerLimits limits, Resolution res,
+            Deque<StackFrame<T>> stack, CallerListener listener) throws InterruptedException, ExecutionException {
+        Caller<T> caller = frame.call;
+        if (listener != null) {
+            listener.forkDispatch(caller, caller.dependencyCount());
+        }
+        if (caller instanceof RaceCaller) {
+            try {
+                frame.state = race((RaceCaller<T>) caller, threadStack, limits, res, stack);
+            } finally {
+                if (listener != null) {
+                    listener.forkJoin(caller, caller.dependencyCount());
+                }
+            }
+            frame.index = caller.dependencyCount();
+            if (frame.owned) {
+                caller.releaseDependencies();
+            }
+            return;
+        }
+        // use threading with dependencies 
+        int count = caller.dependencyCount();
+        CheckedBiFunction<T, T, T> combiner = caller.associativeCombiner();
+        ArrayList<RunnableFuture<T>> array = new ArrayList<>(count);
+        CancelScope group = limits.newScope();
+        CallerLimits newFork = limits.newFork(stack, group);
+        for (int i = 0; i < count; i++) {
+            Caller<T> c = res.canonical(caller.dependency(i));
+            switch (c.type) {
+                case RESULT:
+                    array.add(new ValuePromise<>(c.value));
+                    break;
+                case FUNCTION:
+                    fork(combiner != null, res, () -> { // actually use recursion, because localizing is hard, and has to be fast, so just limit branching size
+                        return group.run(() -> resolveThreadedInner(c, ThreadStack.createOrReuse(threadStack), newFork, res));
+                    }).collect(array);
+                    break;
+                case MEMOIZING:
+                    if (isMemoizedDone(c)) {
+                        if (listener != null) {
+                            listener.memoHit(c);
+                        }
+                        array.add(new CompletablePromise<>(c.compl));
+                    } else {
+                        fork(combiner != null, res, () -> { // actually use recursion, because localizing is hard, and has to be fast, so just limit branching size
+                            return group.run(() -> resolveThreadedInner(c, ThreadStack.createOrReuse(threadStack), newFork, res));
+                        }).collect(array);
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown caller state" + c);
+            }
+        }
+        // combine results pairwise as they arrive
+        CompletableFuture<T> reduced = combiner == null ? null : reduceTree(array, 0, array.size(), combiner, res.exe);
+        Promise waiterAndRunner = new Promise(array);
+
+        boolean success = false;
+        Object forkEvent = CallerEvents.forkBegin();
+        try {
+            waiterAndRunner.run(); // help with progress
+            waiterAndRunner.get(); // wait for execution
+            if (reduced != null) {
+                frame.addArg(reduced.get());
+            }
+            success = true;
+        } catch (ExecutionException err) {
+            //execution failed at some point, so just cancel everything, nested forks included
+            group.cancel(err.getCause());
+            for (Future pro : array) {
+                pro.cancel(true);
+            }
+            if (group.failure != null && group.failure != err.getCause()) { // report the first failure, not a cancellation
+                err = new ExecutionException(group.failure);
+            }
+            while (err.getCause() instanceof ExecutionException) {
+                err = (ExecutionException) err.getCause();
+            }
+            throw err;
+        } finally {
+            if (!success) {
+                group.cancel(null);
+            }
+            group.close();
+            CallerEvents.forkEnd(forkEvent, count);
+            if (listener != null) {
+                listener.forkJoin(caller, count);
+            }
+        }
+        if (reduced == null) {
+            for (Future pro : array) {
+                frame.addArg((T) pro.get());
+            }
+        }
+        frame.index += array.size();
+        if (frame.owned) {
+            caller.releaseDependencies();
+        }
+    }
+
+    /**
+     * Resolver loop without listener hooks, so resolution without a listener
+     * is not instrumented at all. Same as {@link #resolveListenedLoop}, every
+     * change must be made in both.
+     */
+    private static <T> T resolveLoop(Caller<T> caller, ThreadStack threadStack, final CallerLimits limits, Resolution res,
+            Deque<StackFrame<T>> stack, Deque<Caller<T>> firstMemoizedStack) throws InterruptedException, CancellationException, TimeoutException, ExecutionException {
+
+        // asynchronous resolution moves between threads, but never forks
+        final Object owner = res.async ? res : Thread.currentThread();
+        final CallerHeapGuard heapGuard = res.heapGuard;
+        int steps = 0;
+        while (true) {
+            if (threadStack != null && threadStack.wasInterrupted()) {
                 throw new InterruptedException("Caller has been interrupted");
             }
+            limits.assertNotCancelled();
+            if (heapGuard != null && (++steps & CallerHeapGuard.CHECK_MASK) == 0) {
+                heapGuard.assertHeap();
+            }
+            if (res.checkpointTimer != null && res.checkpointTimer.due()) {
+                // caller is only relevant with empty stack
+                Caller<T> current = stack.isEmpty() ? caller : null;
+                res.checkpoint.write(new CallerCheckpoint.State<>(res.callNumber.get(), res.interner, current, firstMemoizedStack, stack));
+            }
             if (stack.isEmpty()) {
+                caller = res.canonical(caller);
                 switch (caller.type) {
                     case RESULT:
                         return complete(firstMemoizedStack, caller.value);
                     case MEMOIZING:
                         if (runnerCAS(caller)) {
-                            if (caller.dependencies == null) {
-                                limits.assertCallLimit(callNumber);
+                            if (!caller.hasDependencies()) {
+                                limits.assertCallLimit(res);
                                 firstMemoizedStack.add(caller);
                                 caller = caller.call.apply(emptyArgs);
                             } else {
-                                stack.addLast(new StackFrame<>(caller));
+                                stack.addLast(new StackFrame<>(caller, res.lean));
                             }
                             break;
                         } else {
-                            return complete(firstMemoizedStack, caller.compl.get());
+                            return complete(firstMemoizedStack, awaitMemo(caller, owner, stack, firstMemoizedStack));
                         }
                     case FUNCTION:
-                        if (caller.dependencies == null) {
-                            limits.assertCallLimit(callNumber);
+                        if (!caller.hasDependencies()) {
+                            limits.assertCallLimit(res);
                             caller = caller.call.apply(emptyArgs);
                         } else {
-                            stack.addLast(new StackFrame(caller));
+                            stack.addLast(new StackFrame<>(caller, res.lean));
                         }
                         break;
 
@@ -435,34 +2741,67 @@ public class CallerImpl {
             limits.assertStackLimit(stack);
             StackFrame<T> frame = stack.getLast();
             caller = frame.call;
-            if (frame.readyArgs(caller)) { //demolish stack, because got all dependecies
-                limits.assertCallLimit(callNumber);
-                caller = caller.call.apply(frame.args == null ? emptyArgs : new CastList(frame.args)); // last call with dependants
+            if (limits.fork > 0 && frame.index == 0 && caller.dependencyCount() > 1 && res.canFork()) {
+                forkDependencies(frame, threadStack, limits, res, stack, null);
+                continue;
+            }
+            Caller<T> next = caller.nextDependency(frame);
+            if (next != null && caller instanceof AbstractLoopCaller && ((AbstractLoopCaller) caller).countsIterations()) {
+                limits.assertCallLimit(res); // each iteration is a call, as if unrolled
+            }
+            if (frame.owned && next != null) {
+                caller.releaseConsumed(frame);
+            }
+            Caller<T> get = res.canonical(next);
+            if (get == null) { //demolish stack, because got all dependecies
+                if (batchStep(stack, frame)) {
+                    continue;
+                }
+                if (res.async) {
+                    CompletableFuture<?> pending = caller.pending(frame);
+                    if (pending != null) {
+                        throw new Suspension(pending);
+                    }
+                }
+                if (frame.deferred != null) {
+                    frame.acceptDeferred(owner, stack, firstMemoizedStack);
+                }
+                limits.assertCallLimit(res);
+                caller = res.canonical(caller.invoke(frame)); // last call with dependants
                 switch (caller.type) {
                     case MEMOIZING:
 
                         if (runnerCAS(caller)) {
                             stack.getLast().continueWith(caller);
                         } else {// done or executing on other thread
-                            T v = caller.compl.get();
-                            complete(stack.pollLast().memoizingStack, v);
+                            StackFrame<T> done = stack.pollLast();
+                            StackFrame<T> parent = stack.peekLast();
+                            if (parent != null && parent.call.deferrable() && !caller.compl.isDone()) {
+                                // parent keeps resolving its other dependencies meanwhile
+                                assertNoCycle(caller, owner);
+                                parent.defer(completeLater(done.memoizingStack, caller), caller);
+                                break;
+                            }
+                            T v = awaitMemo(caller, owner, stack, firstMemoizedStack);
+                            complete(done.memoizingStack, v);
                             if (stack.isEmpty()) {
                                 return complete(firstMemoizedStack, v);
                             } else {
-                                stack.getLast().args.add(v);
+                                stack.getLast().addArg(v);
                             }
                         }
                         break;
                     case FUNCTION:
-                        stack.getLast().continueWith(caller);
+                        stack.getLast().continueWith(caller, res.lean);
                         break;
 
                     case RESULT:
-                        complete(stack.pollLast().memoizingStack, caller.value);
+                        StackFrame<T> done = stack.pollLast();
+                        complete(done.memoizingStack, caller.value);
                         if (stack.isEmpty()) {
                             return complete(firstMemoizedStack, caller.value);
                         } else {
-                            stack.getLast().args.add(caller.value);
+                            stack.getLast().addArg(caller.value);
                         }
                         break;
 
@@ -472,98 +2811,221 @@ public class CallerImpl {
                 continue;
             }
             // not demolish stack
-            if (caller.type == CallerType.RESULT) {
-                frame.args.add(caller.value);
+            switch (get.type) {
+                case RESULT:
+                    frame.addArg(get.value);
+                    continue;
+                case FUNCTION:
+                    if (get instanceof AsyncCaller && caller.deferrable()) {
+                        // keep resolving other dependencies, while value is pending
+                        CompletableFuture<T> future = ((AsyncCaller<T>) get).start();
+                        if (future.isDone()) {
+                            frame.addArg(future.join());
+                        } else {
+                            frame.defer(future);
+                        }
+                        continue;
+                    }
+                    stack.addLast(new StackFrame<>(get, res.lean));
+                    res.pushed(stack);
+                    continue;
+                case MEMOIZING:
+                    if (runnerCAS(get)) {
+                        stack.addLast(new StackFrame<>(get, res.lean));
+                        res.pushed(stack);
+                        continue;
+                    }
+                    if (caller.deferrable() && !get.compl.isDone()) {
+                        // computed by another thread, so keep resolving other dependencies meanwhile
+                        assertNoCycle(get, owner);
+                        frame.defer(get.compl, get);
+                    } else {//done or in another thread so just wait
+                        frame.addArg(awaitMemo(get, owner, stack, firstMemoizedStack));
+                    }
+                    continue;
+                default:
+                    throw new IllegalStateException("Unknown caller state" + get);
+            }
+
+        }
+    }
+
+    /**
+     * Same as {@link #resolveLoop}, but notifies listener of resolution.
+     */
+    private static <T> T resolveListenedLoop(Caller<T> caller, ThreadStack threadStack, final CallerLimits limits, Resolution res,
+            Deque<StackFrame<T>> stack, Deque<Caller<T>> firstMemoizedStack) throws InterruptedException, CancellationException, TimeoutException, ExecutionException {
+
+        // asynchronous resolution moves between threads, but never forks
+        final Object owner = res.async ? res : Thread.currentThread();
+        final CallerListener listener = res.listener;
+        final CallerHeapGuard heapGuard = res.heapGuard;
+        int steps = 0;
+        while (true) {
+            if (threadStack != null && threadStack.wasInterrupted()) {
+                throw new InterruptedException("Caller has been interrupted");
+            }
+            limits.assertNotCancelled();
+            if (heapGuard != null && (++steps & CallerHeapGuard.CHECK_MASK) == 0) {
+                heapGuard.assertHeap();
+            }
+            if (res.checkpointTimer != null && res.checkpointTimer.due()) {
+                // caller is only relevant with empty stack
+                Caller<T> current = stack.isEmpty() ? caller : null;
+                res.checkpoint.write(new CallerCheckpoint.State<>(res.callNumber.get(), res.interner, current, firstMemoizedStack, stack));
+            }
+            if (stack.isEmpty()) {
+                caller = res.canonical(caller);
+                switch (caller.type) {
+                    case RESULT:
+                        return complete(firstMemoizedStack, caller.value);
+                    case MEMOIZING:
+                        if (runnerCAS(caller)) {
+                            listener.memoMiss(caller);
+                            if (!caller.hasDependencies()) {
+                                limits.assertCallLimit(res);
+                                firstMemoizedStack.add(caller);
+                                caller = invoke(listener, caller, null);
+                            } else {
+                                stack.addLast(new StackFrame<>(caller, res.lean));
+                                listener.framePush(caller, stack.size());
+                            }
+                            break;
+                        } else {
+                            listener.memoHit(caller);
+                            return complete(firstMemoizedStack, awaitMemo(caller, owner, stack, firstMemoizedStack));
+                        }
+                    case FUNCTION:
+                        if (!caller.hasDependencies()) {
+                            limits.assertCallLimit(res);
+                            caller = invoke(listener, caller, null);
+                        } else {
+                            stack.addLast(new StackFrame<>(caller, res.lean));
+                            listener.framePush(caller, stack.size());
+                        }
+                        break;
+
+                    default:
+                        throw new IllegalStateException("No value or call"); // should never happen
+                }
                 continue;
             }
-            if (isMemoizedDone(caller)) {
-                frame.args.add(caller.compl.get());
+            // in stack
+            limits.assertStackLimit(stack);
+            StackFrame<T> frame = stack.getLast();
+            caller = frame.call;
+            if (limits.fork > 0 && frame.index == 0 && caller.dependencyCount() > 1 && res.canFork()) {
+                forkDependencies(frame, threadStack, limits, res, stack, listener);
                 continue;
             }
-            if (caller.type == CallerType.FUNCTION || isMemoizedNotDone(caller)) {
-                if (caller.dependencies == null) { // dependencies empty
-                    // just call, assume we have expanded stack before
-                    if (caller.type == CallerType.FUNCTION || runnerCAS(caller)) {
-                        limits.assertCallLimit(callNumber);
-                        frame.continueWith(caller.call.apply(emptyArgs)); // replace current frame, because of simple tail recursion
-                    } else {//in another thread
-                        frame.args.add(caller.compl.get());
-                    }
+            Caller<T> next = caller.nextDependency(frame);
+            if (next != null && caller instanceof AbstractLoopCaller && ((AbstractLoopCaller) caller).countsIterations()) {
+                limits.assertCallLimit(res); // each iteration is a call, as if unrolled
+            }
+            if (frame.owned && next != null) {
+                caller.releaseConsumed(frame);
+            }
+            Caller<T> get = res.canonical(next);
+            if (get == null) { //demolish stack, because got all dependecies
+                if (batchStep(stack, frame)) {
                     continue;
                 }
-                // dep not empty and no threading
-                if (limits.fork <= 0 || caller.dependencies.size() <= 1) {
-                    Caller<T> get = caller.dependencies.get(frame.index);
-                    frame.index++;
-                    switch (get.type) {
-                        case RESULT:
-                            frame.args.add(get.value);
-                            break;
-                        case FUNCTION:
-                            stack.addLast(new StackFrame<>(get));
-                            break;
-                        case MEMOIZING:
-                            if (runnerCAS(get)) {
-                                stack.addLast(new StackFrame<>(get));
-                            } else {//in another thread so just wait
-                                frame.args.add(get.compl.get());
-                            }
-                            break;
-                        default:
-                            throw new IllegalStateException("Unknown caller state" + get);
+                if (res.async) {
+                    CompletableFuture<?> pending = caller.pending(frame);
+                    if (pending != null) {
+                        throw new Suspension(pending);
                     }
-                    continue;
                 }
+                if (frame.deferred != null) {
+                    frame.acceptDeferred(owner, stack, firstMemoizedStack);
+                }
+                limits.assertCallLimit(res);
+                caller = res.canonical(invoke(listener, caller, frame)); // last call with dependants
+                switch (caller.type) {
+                    case MEMOIZING:
 
-                // use threading with dependencies 
-                ArrayList<RunnableFuture<T>> array = new ArrayList<>(caller.dependencies.size());
-                CallerLimits newFork = limits.newFork(stack);
-                for (Caller<T> c : caller.dependencies) {
-                    switch (c.type) {
-                        case RESULT:
-                            array.add(new ValuePromise<>(c.value));
-                            break;
-                        case FUNCTION:
-                            new Promise<>(() -> { // actually use recursion, because localizing is hard, and has to be fast, so just limit branching size
-                                return resolveThreadedInner(c, ThreadStack.createOrReuse(threadStack), newFork, callNumber, exe);
-                            }).execute(exe).collect(array);
-                            break;
-                        case MEMOIZING:
-                            if (isMemoizedDone(c)) {
-                                array.add(new CompletablePromise<>(c.compl));
+                        if (runnerCAS(caller)) {
+                            stack.getLast().continueWith(caller);
+                        } else {// done or executing on other thread
+                            StackFrame<T> done = stack.pollLast();
+                            listener.memoHit(caller);
+                            listener.framePop(done.call, stack.size() + 1);
+                            StackFrame<T> parent = stack.peekLast();
+                            if (parent != null && parent.call.deferrable() && !caller.compl.isDone()) {
+                                // parent keeps resolving its other dependencies meanwhile
+                                assertNoCycle(caller, owner);
+                                parent.defer(completeLater(done.memoizingStack, caller), caller);
+                                break;
+                            }
+                            T v = awaitMemo(caller, owner, stack, firstMemoizedStack);
+                            complete(done.memoizingStack, v);
+                            if (stack.isEmpty()) {
+                                return complete(firstMemoizedStack, v);
                             } else {
-                                new Promise(() -> { // actually use recursion, because localizing is hard, and has to be fast, so just limit branching size
-                                    return resolveThreadedInner(c, ThreadStack.createOrReuse(threadStack), newFork, callNumber, exe);
-                                }).execute(exe).collect(array);
+                                stack.getLast().addArg(v);
                             }
-                            break;
-                        default:
-                            throw new IllegalStateException("Unknown caller state" + c);
-                    }
-                }
-                Promise waiterAndRunner = new Promise(array);
+                        }
+                        break;
+                    case FUNCTION:
+                        stack.getLast().continueWith(caller, res.lean);
+                        break;
 
-                try {
-                    waiterAndRunner.run(); // help with progress
-                    waiterAndRunner.get(); // wait for execution
-                } catch (ExecutionException err) {
-                    //execution failed at some point, so just cancel everything
-                    for (Future pro : array) {
-                        pro.cancel(true);
-                    }
-                    while (err.getCause() instanceof ExecutionException) {
-                        err = (ExecutionException) err.getCause();
-                    }
-                    throw err;
+                    case RESULT:
+                        StackFrame<T> done = stack.pollLast();
+                        listener.framePop(done.call, stack.size() + 1);
+                        complete(done.memoizingStack, caller.value);
+                        if (stack.isEmpty()) {
+                            return complete(firstMemoizedStack, caller.value);
+                        } else {
+                            stack.getLast().addArg(caller.value);
+                        }
+                        break;
 
-                }
-                for (Future pro : array) {
-                    frame.args.add((T) pro.get());
-                }
-                frame.index += array.size();
+                    default:
+                        throw new IllegalStateException("No value or call"); // should never happen
+                    }
                 continue;
             }
-            throw new IllegalStateException("Reached illegal caller state " + caller + " exiting");
+            // not demolish stack
+            switch (get.type) {
+                case RESULT:
+                    frame.addArg(get.value);
+                    continue;
+                case FUNCTION:
+                    if (get instanceof AsyncCaller && caller.deferrable()) {
+                        // keep resolving other dependencies, while value is pending
+                        CompletableFuture<T> future = ((AsyncCaller<T>) get).start();
+                        if (future.isDone()) {
+                            frame.addArg(future.join());
+                        } else {
+                            frame.defer(future);
+                        }
+                        continue;
+                    }
+                    stack.addLast(new StackFrame<>(get, res.lean));
+                    res.pushed(stack);
+                    listener.framePush(get, stack.size());
+                    continue;
+                case MEMOIZING:
+                    if (runnerCAS(get)) {
+                        stack.addLast(new StackFrame<>(get, res.lean));
+                        res.pushed(stack);
+                        listener.memoMiss(get);
+                        listener.framePush(get, stack.size());
+                        continue;
+                    }
+                    listener.memoHit(get);
+                    if (caller.deferrable() && !get.compl.isDone()) {
+                        // computed by another thread, so keep resolving other dependencies meanwhile
+                        assertNoCycle(get, owner);
+                        frame.defer(get.compl, get);
+                    } else {//done or in another thread so just wait
+                        frame.addArg(awaitMemo(get, owner, stack, firstMemoizedStack));
+                    }
+                    continue;
+                default:
+                    throw new IllegalStateException("Unknown caller state" + get);
+            }
 
         }
     }
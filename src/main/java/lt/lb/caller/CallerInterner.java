@@ -0,0 +1,70 @@
+package lt.lb.caller;
+
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import lt.lb.caller.util.SerializableCallable;
+
+/**
+ * Hash-consing table of keyed {@link Caller} objects. Every keyed caller (see
+ * {@link Caller#ofKeyed}) with equal key is replaced by the same memoized
+ * caller, so overlapping subproblems are computed once and repeated tree
+ * expansions become DAG evaluation.
+ *
+ * Each resolution creates its own table, unless a shared one is provided via
+ * {@link CallerResolve#setInterner(CallerInterner)}. Keys should be immutable
+ * and have proper {@code equals} and {@code hashCode}.
+ *
+ * Thread safe. Serializable, if every interned caller is.
+ *
+ * @author laim0nas100
+ */
+public class CallerInterner implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected final ConcurrentHashMap<Object, Caller> table = new ConcurrentHashMap<>();
+
+    /**
+     * Get or create memoized caller of given key.
+     *
+     * @param <T>
+     * @param key
+     * @param factory creates caller if key is not yet present
+     * @return memoized caller, which is shared by every equal key
+     */
+    public <T> Caller<T> intern(Object key, Callable<Caller<T>> factory) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(factory);
+        return table.computeIfAbsent(key, k -> Caller.ofCallableMemo(factory));
+    }
+
+    /**
+     * Same as {@link #intern(Object, Callable)}, but lambdas are serializable,
+     * so that this table can be checkpointed.
+     *
+     * @param <T>
+     * @param key
+     * @param factory creates caller if key is not yet present
+     * @return memoized caller, which is shared by every equal key
+     */
+    public <T> Caller<T> intern(Object key, SerializableCallable<Caller<T>> factory) {
+        return intern(key, (Callable<Caller<T>>) factory);
+    }
+
+    /**
+     * @return amount of interned callers
+     */
+    public int size() {
+        return table.size();
+    }
+
+    /**
+     * Forget every interned caller.
+     */
+    public void clear() {
+        table.clear();
+    }
+
+}
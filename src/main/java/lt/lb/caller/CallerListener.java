@@ -0,0 +1,100 @@
+package lt.lb.caller;
+
+/**
+ * Listener of resolution steps, registered with
+ * {@link CallerResolve#setListener(CallerListener)}. Every method does nothing
+ * by default, so only the interesting ones need to be implemented.
+ *
+ * Forked dependencies are resolved in other threads, so a listener of a
+ * forking resolution must be thread safe. Frame depth is the size of the
+ * explicit stack of a single thread.
+ *
+ * Resolution with a listener runs a separate instrumented resolver loop,
+ * which is chosen once per resolution, so without a listener resolution has
+ * no hooks at all.
+ *
+ * @author laim0nas100
+ */
+public interface CallerListener {
+
+    /**
+     * Caller with dependencies got its own stack frame.
+     *
+     * @param caller
+     * @param depth stack size after push
+     */
+    public default void framePush(Caller<?> caller, int depth) {
+    }
+
+    /**
+     * Stack frame is done. Frames of failed resolution are not popped.
+     *
+     * @param caller frame caller (last one, if frame continued with other
+     * callers)
+     * @param depth stack size before pop
+     */
+    public default void framePop(Caller<?> caller, int depth) {
+    }
+
+    /**
+     * User function of given caller is about to be invoked.
+     *
+     * @param caller
+     */
+    public default void invokeStart(Caller<?> caller) {
+    }
+
+    /**
+     * User function of given caller has returned or failed.
+     *
+     * @param caller
+     * @param next returned caller, or {@code null} if function failed
+     */
+    public default void invokeEnd(Caller<?> caller, Caller<?> next) {
+    }
+
+    /**
+     * Dependencies of given caller are about to be resolved in parallel.
+     *
+     * @param caller
+     * @param fanOut dependency count
+     */
+    public default void forkDispatch(Caller<?> caller, int fanOut) {
+    }
+
+    /**
+     * Forked dependencies of given caller are done (or cancelled, if
+     * failed).
+     *
+     * @param caller
+     * @param fanOut dependency count
+     */
+    public default void forkJoin(Caller<?> caller, int fanOut) {
+    }
+
+    /**
+     * Memoized value is computed elsewhere (or already has been).
+     *
+     * @param memo
+     */
+    public default void memoHit(Caller<?> memo) {
+    }
+
+    /**
+     * Memoized value is about to be computed by this resolution.
+     *
+     * @param memo
+     */
+    public default void memoMiss(Caller<?> memo) {
+    }
+
+    /**
+     * Root resolution is done.
+     *
+     * @param value resolved value, if successful
+     * @param error failure, if any
+     */
+    public default void resolved(Object value, Throwable error) {
+    }
+
+}
@@ -0,0 +1,89 @@
+package lt.lb.caller;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import lt.lb.caller.util.CastList;
+import lt.lb.caller.util.CheckedFunction;
+
+/**
+ * Memoized {@link Caller} for incremental recomputation. While resolving, a
+ * node records itself as a dependent of every {@link CallerNode} and
+ * {@link CallerCell} among its dependencies. Invalidating a node (or setting
+ * a cell) invalidates every transitive dependent, so the next resolution
+ * computes only invalidated nodes, while valid ones provide memoized values.
+ *
+ * Only dependencies given to the builder are recorded, so nodes and cells
+ * must not be used only inside the node function. Invalidation should not
+ * happen while a resolution that uses the node is running.
+ *
+ * Create with {@link CallerBuilder#toNode}.
+ *
+ * @author laim0nas100
+ * @param <T>
+ */
+public class CallerNode<T> extends CallerImpl.RetainingCaller<T> {
+
+    final Set<CallerNode<?>> dependents = ConcurrentHashMap.newKeySet();
+    protected final Caller<T> computation;
+    protected final AtomicReference<Caller<T>> memo = new AtomicReference<>();
+
+    CallerNode(CheckedFunction<CastList<T>, Caller<T>> call, List<Caller<T>> inputs) {
+        this.computation = new CallerImpl.NodeComputation<>(this, Objects.requireNonNull(call), inputs);
+    }
+
+    @Override
+    Caller<T> newMemo() {
+        return Caller.ofUnaryMemo(computation, CallerImpl.serializable(Caller::ofResult));
+    }
+
+    @Override
+    Caller<T> current() {
+        Caller<T> current = memo.get();
+        while (current == null) {
+            memo.compareAndSet(null, newMemo());
+            current = memo.get();
+        }
+        return current;
+    }
+
+    @Override
+    void taken(Caller<T> source, T value) {
+    }
+
+    /**
+     * @return whether memoized value is computed and valid
+     */
+    public boolean isValid() {
+        Caller<T> current = memo.get();
+        return current != null && current.compl.isDone();
+    }
+
+    /**
+     * Forget memoized value of this node and every transitive dependent.
+     */
+    public void invalidate() {
+        ArrayDeque<CallerNode<?>> queue = new ArrayDeque<>();
+        queue.add(this);
+        invalidateAll(queue);
+    }
+
+    static void invalidate(Collection<CallerNode<?>> dependents) {
+        invalidateAll(new ArrayDeque<>(dependents));
+    }
+
+    private static void invalidateAll(ArrayDeque<CallerNode<?>> queue) {
+        while (!queue.isEmpty()) {
+            CallerNode<?> node = queue.pollFirst();
+            // already invalid node had its dependents invalidated
+            if (node.memo.getAndSet(null) != null) {
+                queue.addAll(node.dependents);
+            }
+        }
+    }
+
+}
@@ -1,9 +1,17 @@
 package lt.lb.caller;
 
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.FutureTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import lt.lb.caller.util.CheckedFunction;
 
 /**
  * Immutable {@link Caller} argument builder.
@@ -14,6 +22,11 @@ import java.util.concurrent.FutureTask;
  */
 public class CallerResolve {
 
+    /**
+     * What to put if in-flight fork limit is disabled
+     */
+    public static final int DISABLED_IN_FLIGHT_LIMIT = -1;
+
     public static class WithCaller<T> extends CallerResolve {
 
         public final Caller<T> caller;
@@ -32,14 +45,19 @@ public class CallerResolve {
             this.caller = caller;
         }
 
+        @Override
+        protected WithCaller<T> derive(CallerResolve args) {
+            return new WithCaller<>(caller, args);
+        }
+
         @Override
         public WithCaller<T> setInterruptible(boolean interruptible) {
-            return new WithCaller<>(caller, executor, interruptible, stackLimit, callLimit, forkCount);
+            return (WithCaller<T>) super.setInterruptible(interruptible);
         }
 
         @Override
-        public WithCaller setStackLimit(int stackLimit) {
-            return new WithCaller<>(caller, executor, interruptible, stackLimit, callLimit, forkCount);
+        public WithCaller<T> setStackLimit(int stackLimit) {
+            return (WithCaller<T>) super.setStackLimit(stackLimit);
         }
 
         /**
@@ -48,8 +66,8 @@ public class CallerResolve {
          * @return
          */
         @Override
-        public WithCaller setCallLimit(long callLimit) {
-            return new WithCaller<>(caller, executor, interruptible, stackLimit, callLimit, forkCount);
+        public WithCaller<T> setCallLimit(long callLimit) {
+            return (WithCaller<T>) super.setCallLimit(callLimit);
         }
 
         /**
@@ -59,7 +77,7 @@ public class CallerResolve {
          */
         @Override
         public WithCaller<T> setForkCount(int forkCount) {
-            return new WithCaller<>(caller, executor, interruptible, stackLimit, callLimit, forkCount);
+            return (WithCaller<T>) super.setForkCount(forkCount);
         }
 
         /**
@@ -71,7 +89,7 @@ public class CallerResolve {
          */
         @Override
         public WithCaller<T> setExecutor(Executor executor) {
-            return new WithCaller<>(caller, executor, interruptible, stackLimit, callLimit, forkCount);
+            return (WithCaller<T>) super.setExecutor(executor);
         }
 
         /**
@@ -82,7 +100,63 @@ public class CallerResolve {
          */
         @Override
         public WithCaller<T> setExecutorCommonForkPool() {
-            return new WithCaller<>(caller, ForkJoinPool.commonPool(), interruptible, stackLimit, callLimit, forkCount);
+            return (WithCaller<T>) super.setExecutorCommonForkPool();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public WithCaller<T> setInterner(CallerInterner interner) {
+            return (WithCaller<T>) super.setInterner(interner);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public WithCaller<T> setCheckpoint(CallerCheckpoint checkpoint) {
+            return (WithCaller<T>) super.setCheckpoint(checkpoint);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public WithCaller<T> setSpill(CallerSpill spill) {
+            return (WithCaller<T>) super.setSpill(spill);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public WithCaller<T> setHeapGuard(CallerHeapGuard heapGuard) {
+            return (WithCaller<T>) super.setHeapGuard(heapGuard);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public WithCaller<T> setMaxInFlightForks(int maxInFlightForks) {
+            return (WithCaller<T>) super.setMaxInFlightForks(maxInFlightForks);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public WithCaller<T> setLean(boolean lean) {
+            return (WithCaller<T>) super.setLean(lean);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public WithCaller<T> setListener(CallerListener listener) {
+            return (WithCaller<T>) super.setListener(listener);
         }
 
         /**
@@ -91,7 +165,18 @@ public class CallerResolve {
          * @return
          */
         public T resolveValue() {
-            return CallerImpl.resolveThreaded(caller, interruptible, stackLimit, callLimit, forkCount, executor);
+            return CallerImpl.resolveThreaded(caller, this);
+        }
+
+        /**
+         * Apply arguments and resolve included {@link Caller} in provided
+         * executor without blocking a thread while asynchronous leaves are
+         * pending. Never forks.
+         *
+         * @return
+         */
+        public CompletableFuture<T> resolveAsync() {
+            return CallerImpl.resolveAsync(caller, this);
         }
 
         /**
@@ -101,7 +186,7 @@ public class CallerResolve {
          * @return
          */
         public FutureTask<T> resolveFuture() {
-            return CallerImpl.resolveFuture(caller, interruptible, stackLimit, callLimit, forkCount, executor);
+            return CallerImpl.resolveFuture(caller, this);
         }
 
         /**
@@ -124,25 +209,126 @@ public class CallerResolve {
     public final int forkCount;
 
     public final Executor executor;
+    /**
+     * Table of keyed callers. If {@code null}, each resolution creates its
+     * own.
+     */
+    public final CallerInterner interner;
+    /**
+     * Periodic checkpoint of resolution. If {@code null}, checkpoints are
+     * disabled.
+     */
+    public final CallerCheckpoint checkpoint;
+    /**
+     * Spill of cold stack frames. If {@code null}, whole stack is kept on
+     * heap.
+     */
+    public final CallerSpill spill;
+    /**
+     * Heap pressure aware limits. If {@code null}, heap usage is not checked.
+     */
+    public final CallerHeapGuard heapGuard;
+    /**
+     * Maximum amount of forks submitted to executor at once by a single
+     * resolution. Non-positive disables limit.
+     */
+    public final int maxInFlightForks;
+    /**
+     * Whether consumed dependencies are released during resolution.
+     */
+    public final boolean lean;
+    /**
+     * Listener of resolution steps. If {@code null}, resolution is not
+     * instrumented.
+     */
+    public final CallerListener listener;
 
     public CallerResolve() {
         this(Runnable::run, false, Caller.DISABLED_STACK_LIMIT, Caller.DISABLED_CALL_LIMIT, Caller.DEFAULT_FORK_COUNT);
     }
 
     public CallerResolve(CallerResolve other) {
-        this.executor = other.executor;
-        this.interruptible = other.interruptible;
-        this.stackLimit = other.stackLimit;
-        this.callLimit = other.callLimit;
-        this.forkCount = other.forkCount;
+        this(new Options(other));
     }
 
     public CallerResolve(Executor executor, boolean interruptible, int stackLimit, long callLimit, int forkCount) {
-        this.executor = Objects.requireNonNull(executor);
-        this.interruptible = interruptible;
-        this.stackLimit = stackLimit;
-        this.callLimit = callLimit;
-        this.forkCount = forkCount;
+        this(new Options(executor, interruptible, stackLimit, callLimit, forkCount));
+    }
+
+    private CallerResolve(Options o) {
+        this.executor = Objects.requireNonNull(o.executor);
+        this.interruptible = o.interruptible;
+        this.stackLimit = o.stackLimit;
+        this.callLimit = o.callLimit;
+        this.forkCount = o.forkCount;
+        this.interner = o.interner;
+        this.checkpoint = o.checkpoint;
+        this.spill = o.spill;
+        this.heapGuard = o.heapGuard;
+        this.maxInFlightForks = o.maxInFlightForks;
+        this.lean = o.lean;
+        this.listener = o.listener;
+    }
+
+    /**
+     * Mutable copy of arguments, only used while deriving new arguments, so
+     * that new options do not need new constructors.
+     */
+    private static class Options {
+
+        Executor executor;
+        boolean interruptible;
+        int stackLimit;
+        long callLimit;
+        int forkCount;
+        CallerInterner interner;
+        CallerCheckpoint checkpoint;
+        CallerSpill spill;
+        CallerHeapGuard heapGuard;
+        int maxInFlightForks = DISABLED_IN_FLIGHT_LIMIT;
+        boolean lean;
+        CallerListener listener;
+
+        Options(Executor executor, boolean interruptible, int stackLimit, long callLimit, int forkCount) {
+            this.executor = executor;
+            this.interruptible = interruptible;
+            this.stackLimit = stackLimit;
+            this.callLimit = callLimit;
+            this.forkCount = forkCount;
+        }
+
+        Options(CallerResolve other) {
+            this(other.executor, other.interruptible, other.stackLimit, other.callLimit, other.forkCount);
+            this.interner = other.interner;
+            this.checkpoint = other.checkpoint;
+            this.spill = other.spill;
+            this.heapGuard = other.heapGuard;
+            this.maxInFlightForks = other.maxInFlightForks;
+            this.lean = other.lean;
+            this.listener = other.listener;
+        }
+    }
+
+    /**
+     * Copy these arguments with a change.
+     *
+     * @param change
+     * @return
+     */
+    private CallerResolve with(Consumer<Options> change) {
+        Options o = new Options(this);
+        change.accept(o);
+        return derive(new CallerResolve(o));
+    }
+
+    /**
+     * Wrap changed arguments in the same kind of object as this one.
+     *
+     * @param args changed arguments
+     * @return
+     */
+    protected CallerResolve derive(CallerResolve args) {
+        return args;
     }
 
     /**
@@ -150,7 +336,7 @@ public class CallerResolve {
      * @return
      */
     public CallerResolve setInterruptible(boolean interruptible) {
-        return new CallerResolve(executor, interruptible, stackLimit, callLimit, forkCount);
+        return with(o -> o.interruptible = interruptible);
     }
 
     /**
@@ -159,7 +345,7 @@ public class CallerResolve {
      * @return
      */
     public CallerResolve setStackLimit(int stackLimit) {
-        return new CallerResolve(executor, interruptible, stackLimit, callLimit, forkCount);
+        return with(o -> o.stackLimit = stackLimit);
     }
 
     /**
@@ -168,7 +354,7 @@ public class CallerResolve {
      * @return
      */
     public CallerResolve setCallLimit(long callLimit) {
-        return new CallerResolve(executor, interruptible, stackLimit, callLimit, forkCount);
+        return with(o -> o.callLimit = callLimit);
     }
 
     /**
@@ -177,7 +363,7 @@ public class CallerResolve {
      * @return
      */
     public CallerResolve setForkCount(int forkCount) {
-        return new CallerResolve(executor, interruptible, stackLimit, callLimit, forkCount);
+        return with(o -> o.forkCount = forkCount);
     }
 
     /**
@@ -187,7 +373,7 @@ public class CallerResolve {
      * @return
      */
     public CallerResolve setExecutor(Executor executor) {
-        return new CallerResolve(executor, interruptible, stackLimit, callLimit, forkCount);
+        return with(o -> o.executor = executor);
     }
 
     /**
@@ -197,7 +383,102 @@ public class CallerResolve {
      * @return
      */
     public CallerResolve setExecutorCommonForkPool() {
-        return new CallerResolve(ForkJoinPool.commonPool(), interruptible, stackLimit, callLimit, forkCount);
+        return setExecutor(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Set table of keyed callers (see {@link Caller#ofKeyed}), so that
+     * memoized results are shared between resolutions. Use {@code null} to
+     * create a new table for each resolution.
+     *
+     * @param interner
+     * @return
+     */
+    public CallerResolve setInterner(CallerInterner interner) {
+        return with(o -> o.interner = interner);
+    }
+
+    /**
+     * Periodically write resolution state to a file, so that it can be
+     * continued with {@link #resume(Path)}. Checkpointed resolution is
+     * single-threaded and every caller must be serializable (see
+     * {@link CallerCheckpoint}). Use {@code null} to disable checkpoints.
+     *
+     * @param checkpoint
+     * @return
+     */
+    public CallerResolve setCheckpoint(CallerCheckpoint checkpoint) {
+        return with(o -> o.checkpoint = checkpoint);
+    }
+
+    /**
+     * Keep only the hot top of the stack on heap and spill the rest to a file
+     * (see {@link CallerSpill}), so that recursion depth is bounded by disk
+     * rather than heap. Use {@code null} to keep whole stack on heap.
+     *
+     * @param spill
+     * @return
+     */
+    public CallerResolve setSpill(CallerSpill spill) {
+        return with(o -> o.spill = spill);
+    }
+
+    /**
+     * Stop forking or fail resolution when heap usage reaches given limits
+     * (see {@link CallerHeapGuard}). Use {@code null} to disable heap checks.
+     *
+     * @param heapGuard
+     * @return
+     */
+    public CallerResolve setHeapGuard(CallerHeapGuard heapGuard) {
+        return with(o -> o.heapGuard = heapGuard);
+    }
+
+    /**
+     * @param maxInFlightForks how many forks a single resolution (including
+     * nested forks) can have submitted to executor at once. When reached,
+     * dependencies are resolved inline. Use non-positive to disable limit.
+     * @return
+     */
+    public CallerResolve setMaxInFlightForks(int maxInFlightForks) {
+        return with(o -> o.maxInFlightForks = maxInFlightForks);
+    }
+
+    /**
+     * Lean resolution releases references to dependencies as soon as they are
+     * consumed, so resolved subtrees can be collected before resolution ends
+     * and peak memory tracks the live frontier.
+     *
+     * Each frame releases them from its own shallow copy of the caller, so
+     * callers themselves are never changed and can be shared or resolved
+     * again. Callers, which are still referenced elsewhere, are not collected.
+     * Memoized, retaining and node callers keep their dependencies.
+     *
+     * @param lean
+     * @return
+     */
+    public CallerResolve setLean(boolean lean) {
+        return with(o -> o.lean = lean);
+    }
+
+    /**
+     * @param listener listener of resolution steps, {@code null} to remove
+     * @return
+     */
+    public CallerResolve setListener(CallerListener listener) {
+        return with(o -> o.listener = listener);
+    }
+
+    /**
+     * Continue resolution from a checkpoint file with these arguments. If
+     * checkpoint is set, resumed resolution is checkpointed as well.
+     *
+     * @param <T>
+     * @param file checkpoint file
+     * @return
+     */
+    public <T> T resume(Path file) {
+        return CallerImpl.resume(file, this);
     }
 
     /**
@@ -219,7 +500,72 @@ public class CallerResolve {
      * @return
      */
     public <T> T resolveValue(Caller<T> caller) {
-        return CallerImpl.resolveThreaded(caller, interruptible, stackLimit, callLimit, forkCount, executor);
+        return CallerImpl.resolveThreaded(caller, this);
+    }
+
+    /**
+     * Apply arguments and resolve every provided {@link Caller} as a single
+     * resolution. Keyed callers (see {@link Caller#ofKeyed}) are shared
+     * between every caller, call limit applies to the whole batch and, if
+     * forking is enabled, every caller is forked in the same pass.
+     *
+     * @param <T>
+     * @param callers
+     * @return results in the same order as callers
+     */
+    public <T> List<T> resolveAll(Collection<Caller<T>> callers) {
+        return CallerImpl.resolveAll(callers, this);
+    }
+
+    /**
+     * Resolve a {@link Caller} of each item in provided executor, keeping at
+     * most {@code concurrency} resolutions in flight. Items are pulled from
+     * input only when there is a free slot, so memory usage does not depend on
+     * input size. Closing the stream cancels resolutions in flight.
+     *
+     * @param <R> input item type
+     * @param <T> result type
+     * @param input items
+     * @param func Caller of each item
+     * @param concurrency maximum amount of resolutions in flight
+     * @param ordered whether results keep input order, otherwise results are
+     * provided as soon as they are resolved
+     * @return lazy stream of results
+     */
+    public <R, T> Stream<T> resolveStream(Iterator<R> input, CheckedFunction<R, Caller<T>> func, int concurrency, boolean ordered) {
+        return CallerImpl.resolveStream(input, func, concurrency, ordered, this);
+    }
+
+    /**
+     * Resolve a {@link Caller} of each item in provided executor, keeping at
+     * most {@code concurrency} resolutions in flight. Items are pulled from
+     * input only when there is a free slot, so memory usage does not depend on
+     * input size. Closing the stream cancels resolutions in flight.
+     *
+     * @param <R> input item type
+     * @param <T> result type
+     * @param input items
+     * @param func Caller of each item
+     * @param concurrency maximum amount of resolutions in flight
+     * @param ordered whether results keep input order, otherwise results are
+     * provided as soon as they are resolved
+     * @return lazy stream of results
+     */
+    public <R, T> Stream<T> resolveStream(Stream<R> input, CheckedFunction<R, Caller<T>> func, int concurrency, boolean ordered) {
+        return resolveStream(input.iterator(), func, concurrency, ordered).onClose(input::close);
+    }
+
+    /**
+     * Apply arguments and resolve provided {@link Caller} in provided executor
+     * without blocking a thread while asynchronous leaves (see
+     * {@link Caller#ofAsync}) are pending. Never forks.
+     *
+     * @param <T>
+     * @param caller
+     * @return
+     */
+    public <T> CompletableFuture<T> resolveAsync(Caller<T> caller) {
+        return CallerImpl.resolveAsync(caller, this);
     }
 
     /**
@@ -231,7 +577,7 @@ public class CallerResolve {
      * @return
      */
     public <T> FutureTask<T> resolveFuture(Caller<T> caller) {
-        return CallerImpl.resolveFuture(caller, interruptible, stackLimit, callLimit, forkCount, executor);
+        return CallerImpl.resolveFuture(caller, this);
     }
 
     /**
@@ -0,0 +1,334 @@
+package lt.lb.caller;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Objects;
+import lt.lb.caller.Caller.CallerType;
+import lt.lb.caller.CallerImpl.StackFrame;
+
+/**
+ * Stack mode for very deep recursion. Only the hot top of the explicit stack
+ * is kept on heap, cold frames below it are serialized in batches into a
+ * temporary file and read back (through an off-heap buffer) as the stack
+ * unwinds. So recursion depth is bounded by disk rather than heap.
+ *
+ * Frames are spilled and restored by segments of half the hot frames. The
+ * last spilled segment stays on heap until the next one is spilled, so stack
+ * depth going back and forth around the edge of hot frames does not write or
+ * read anything.
+ *
+ * Every frame (caller, functions and values) must be
+ * {@link java.io.Serializable}. Spilled frames are read back as copies, so
+ * they must not rely on identity of mutable captured state. Memoizing callers
+ * are the exception: they are kept on heap, so memoization works as usual.
+ *
+ * Resolution with spilled stack never forks and can not be checkpointed.
+ *
+ * Immutable.
+ *
+ * @author laim0nas100
+ */
+public class CallerSpill {
+
+    public final Path directory;
+    public final int hotFrames;
+
+    /**
+     * @param directory where to create temporary spill file
+     * @param hotFrames how many frames to keep on heap. When exceeded, the
+     * oldest half is spilled (at most one more half waits on heap to be
+     * written).
+     */
+    public CallerSpill(Path directory, int hotFrames) {
+        if (hotFrames < 2) {
+            throw new IllegalArgumentException("Hot frames must be at least 2, got " + hotFrames);
+        }
+        this.directory = Objects.requireNonNull(directory);
+        this.hotFrames = hotFrames;
+    }
+
+    <T> SpillStack<T> stack() {
+        return new SpillStack<>(this);
+    }
+
+    /**
+     * Placeholder of a caller kept on heap.
+     */
+    static class Pinned implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        final int index;
+
+        Pinned(int index) {
+            this.index = index;
+        }
+    }
+
+    /**
+     * Batch of frames written to spill file.
+     */
+    static class Segment {
+
+        final long offset;
+        final int length;
+        final int count;
+        final ArrayList<Caller> pinned;
+        /**
+         * Memoized callers, which spilled frames compute
+         */
+        final ArrayList<Caller> memoizing;
+
+        Segment(long offset, int length, int count, ArrayList<Caller> pinned, ArrayList<Caller> memoizing) {
+            this.offset = offset;
+            this.length = length;
+            this.count = count;
+            this.pinned = pinned;
+            this.memoizing = memoizing;
+        }
+    }
+
+    static class SpillOutput extends ObjectOutputStream {
+
+        final ArrayList<Caller> pinned;
+
+        SpillOutput(OutputStream out, ArrayList<Caller> pinned) throws IOException {
+            super(out);
+            this.pinned = pinned;
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            if (obj instanceof Caller && ((Caller) obj).type == CallerType.MEMOIZING) {
+                pinned.add((Caller) obj);
+                return new Pinned(pinned.size() - 1);
+            }
+            return obj;
+        }
+    }
+
+    static class SpillInput extends ObjectInputStream {
+
+        final ArrayList<Caller> pinned;
+
+        SpillInput(InputStream in, ArrayList<Caller> pinned) throws IOException {
+            super(in);
+            this.pinned = pinned;
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            if (obj instanceof Pinned) {
+                return pinned.get(((Pinned) obj).index);
+            }
+            return obj;
+        }
+    }
+
+    static class BufferInput extends InputStream {
+
+        final ByteBuffer buffer;
+
+        BufferInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, buffer.remaining());
+            buffer.get(b, off, len);
+            return len;
+        }
+    }
+
+    /**
+     * Explicit stack, which spills its bottom when it grows over hot frame
+     * count and restores it when hot part is empty. Only the segment before
+     * the last spilled one is written, the last one waits in {@code pending}. Only used by the resolver
+     * ({@code addLast, getLast, pollLast, isEmpty, size}), {@code size}
+     * includes spilled frames.
+     *
+     * @param <T>
+     */
+    static class SpillStack<T> extends ArrayDeque<StackFrame<T>> implements AutoCloseable {
+
+        final CallerSpill spill;
+        final ArrayDeque<Segment> segments = new ArrayDeque<>();
+        /**
+         * Last spilled segment, which is not written yet
+         */
+        ArrayList<StackFrame<T>> pending;
+        int spilled;
+        FileChannel channel;
+        ByteBuffer buffer;
+
+        SpillStack(CallerSpill spill) {
+            this.spill = spill;
+        }
+
+        @Override
+        public void addLast(StackFrame<T> frame) {
+            super.addLast(frame);
+            if (super.size() > spill.hotFrames) {
+                spill(spill.hotFrames / 2);
+            }
+        }
+
+        @Override
+        public StackFrame<T> pollLast() {
+            StackFrame<T> frame = super.pollLast();
+            if (super.isEmpty() && spilled > 0) {
+                restore();
+            }
+            return frame;
+        }
+
+        @Override
+        public int size() {
+            return super.size() + spilled;
+        }
+
+        /**
+         * Iterates hot frames only, {@link #size} includes spilled ones, so
+         * iterator of super class can't be used.
+         */
+        @Override
+        public Iterator<StackFrame<T>> iterator() {
+            ArrayList<StackFrame<T>> hot = new ArrayList<>(super.size());
+            for (Object frame : toArray()) {
+                if (frame != null) {
+                    hot.add((StackFrame<T>) frame);
+                }
+            }
+            return hot.iterator();
+        }
+
+        /**
+         * @return memoized callers, which spilled frames compute
+         */
+        ArrayList<Caller<T>> spilledMemoizing() {
+            ArrayList<Caller<T>> memoizing = new ArrayList<>();
+            for (Segment segment : segments) {
+                for (Caller caller : segment.memoizing) {
+                    memoizing.add(caller);
+                }
+            }
+            if (pending != null) {
+                for (StackFrame<T> frame : pending) {
+                    if (frame.memoizingStack != null) {
+                        memoizing.addAll(frame.memoizingStack);
+                    }
+                }
+            }
+            return memoizing;
+        }
+
+        void spill(int count) {
+            if (pending != null) {
+                write(pending);
+            }
+            pending = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                pending.add(super.pollFirst());
+            }
+            spilled += count;
+        }
+
+        void write(ArrayList<StackFrame<T>> frames) {
+            try {
+                if (channel == null) {
+                    Path file = Files.createTempFile(spill.directory, "caller", ".spill");
+                    channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+                }
+                long offset = channel.position();
+                ArrayList<Caller> pinned = new ArrayList<>();
+                // channel stays open, so stream is flushed, but not closed
+                SpillOutput out = new SpillOutput(new BufferedOutputStream(Channels.newOutputStream(channel)), pinned);
+                ArrayList<Caller> memoizing = new ArrayList<>();
+                out.writeInt(frames.size());
+                for (StackFrame<T> frame : frames) {
+                    out.writeObject(frame);
+                    if (frame.memoizingStack != null) {
+                        memoizing.addAll(frame.memoizingStack);
+                    }
+                }
+                out.flush();
+                segments.addLast(new Segment(offset, (int) (channel.position() - offset), frames.size(), pinned, memoizing));
+            } catch (IOException ex) {
+                throw new CallerException("Failed to spill stack frames", ex);
+            }
+        }
+
+        void restore() {
+            if (pending != null) {
+                for (StackFrame<T> frame : pending) {
+                    super.addLast(frame);
+                }
+                spilled -= pending.size();
+                pending = null;
+                return;
+            }
+            Segment segment = segments.pollLast();
+            try {
+                if (buffer == null || buffer.capacity() < segment.length) {
+                    buffer = ByteBuffer.allocateDirect(Math.max(segment.length, 1 << 16));
+                }
+                buffer.clear();
+                buffer.limit(segment.length);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, segment.offset + buffer.position()) < 0) {
+                        throw new IOException("Spill file ended prematurely");
+                    }
+                }
+                buffer.flip();
+                SpillInput in = new SpillInput(new BufferInput(buffer), segment.pinned);
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    super.addLast((StackFrame<T>) in.readObject());
+                }
+                // file is used as a stack too
+                channel.truncate(segment.offset);
+                channel.position(segment.offset);
+                spilled -= count;
+            } catch (IOException | ClassNotFoundException ex) {
+                throw new CallerException("Failed to restore spilled stack frames", ex);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ex) {
+                    throw new CallerException("Failed to close spill file", ex);
+                }
+            }
+        }
+    }
+
+}
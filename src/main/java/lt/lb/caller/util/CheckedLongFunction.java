@@ -0,0 +1,30 @@
+package lt.lb.caller.util;
+
+import java.io.Serializable;
+
+/**
+ * Function of a primitive {@code long} with exception masking as a
+ * {@link CheckedException}. Avoids index boxing.
+ *
+ * @author laim0nas100
+ */
+@FunctionalInterface
+public interface CheckedLongFunction<R> extends Serializable {
+
+    /**
+     * Applies the function to the given argument. Masks exceptions.
+     *
+     * @param i the function argument
+     * @return the function result
+     */
+    public default R apply(long i) throws CheckedException {
+        try {
+            return applyUnchecked(i);
+        } catch (Throwable e) {
+            throw new CheckedException(e);
+        }
+    }
+
+    public R applyUnchecked(long i) throws Throwable;
+
+}
@@ -0,0 +1,31 @@
+package lt.lb.caller.util;
+
+import java.io.Serializable;
+
+/**
+ * Function of a primitive {@code long} and an object with exception masking as
+ * a {@link CheckedException}. Avoids index boxing.
+ *
+ * @author laim0nas100
+ */
+@FunctionalInterface
+public interface CheckedLongObjFunction<P, R> extends Serializable {
+
+    /**
+     * Applies this function to the given arguments. Masks exceptions.
+     *
+     * @param i the first function argument
+     * @param u the second function argument
+     * @return the function result
+     */
+    public default R apply(long i, P u) throws CheckedException {
+        try {
+            return applyUnchecked(i, u);
+        } catch (Throwable e) {
+            throw new CheckedException(e);
+        }
+    }
+
+    public R applyUnchecked(long i, P u) throws Throwable;
+
+}
@@ -0,0 +1,15 @@
+package lt.lb.caller.util;
+
+import java.io.Serializable;
+import java.util.concurrent.Callable;
+
+/**
+ * {@link Callable}, which is serializable if its captured values are. Needed
+ * by callers, which are checkpointed or spilled to a file.
+ *
+ * @author laim0nas100
+ */
+@FunctionalInterface
+public interface SerializableCallable<V> extends Callable<V>, Serializable {
+
+}
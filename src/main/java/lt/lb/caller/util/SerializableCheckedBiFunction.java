@@ -0,0 +1,14 @@
+package lt.lb.caller.util;
+
+import java.io.Serializable;
+
+/**
+ * {@link CheckedBiFunction}, which is serializable if its captured values
+ * are. Needed by callers, which are checkpointed or spilled to a file.
+ *
+ * @author laim0nas100
+ */
+@FunctionalInterface
+public interface SerializableCheckedBiFunction<O, P, R> extends CheckedBiFunction<O, P, R>, Serializable {
+
+}
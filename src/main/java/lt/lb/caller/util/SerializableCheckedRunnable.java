@@ -0,0 +1,14 @@
+package lt.lb.caller.util;
+
+import java.io.Serializable;
+
+/**
+ * {@link CheckedRunnable}, which is serializable if its captured values are.
+ * Needed by callers, which are checkpointed or spilled to a file.
+ *
+ * @author laim0nas100
+ */
+@FunctionalInterface
+public interface SerializableCheckedRunnable extends CheckedRunnable, Serializable {
+
+}
@@ -0,0 +1,36 @@
+package lt.lb.caller.util.sync;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * {@link Promise} which also completes a {@link CompletableFuture}, so that
+ * dependent actions can be chained without waiting.
+ *
+ * @author laim0nas100
+ */
+public class CompletingPromise<Type> extends Promise<Type> {
+
+    public final CompletableFuture<Type> completion = new CompletableFuture<>();
+
+    public CompletingPromise(Callable<Type> clbl) {
+        super(clbl);
+    }
+
+    @Override
+    protected void done() {
+        if (isCancelled()) {
+            completion.cancel(false);
+            return;
+        }
+        try {
+            completion.complete(get());
+        } catch (ExecutionException ex) {
+            completion.completeExceptionally(ex.getCause());
+        } catch (InterruptedException ex) {
+            completion.completeExceptionally(ex);
+        }
+    }
+
+}
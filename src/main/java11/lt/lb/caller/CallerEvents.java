@@ -0,0 +1,129 @@
+package lt.lb.caller;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder events of resolution. Java 11+ implementation, which is
+ * placed in multi-release jar over the no-op one. Both implementations must
+ * have the same signatures.
+ *
+ * Events are only committed when enabled in the recording, so the cost of an
+ * idle recorder is an allocation and a few checks.
+ *
+ * @author laim0nas100
+ */
+final class CallerEvents {
+
+    private CallerEvents() {
+    }
+
+    /**
+     * Whether resolution event is currently recorded. Additional statistics
+     * (call count, maximum depth) are only gathered by resolutions, which
+     * began while recording.
+     *
+     * @return if resolution event is enabled in any running recording
+     */
+    static boolean recording() {
+        return RESOLUTION.isEnabled();
+    }
+
+    @Name("lt.lb.caller.Resolution")
+    @Label("Caller Resolution")
+    @Category("Caller")
+    @Description("Resolution of a root caller")
+    static class ResolutionEvent extends Event {
+
+        @Label("Calls")
+        long calls;
+
+        @Label("Max Depth")
+        @Description("Maximum explicit stack size of a single thread")
+        int maxDepth;
+    }
+
+    private static final EventType RESOLUTION = EventType.getEventType(ResolutionEvent.class);
+
+    @Name("lt.lb.caller.Fork")
+    @Label("Caller Fork")
+    @Category("Caller")
+    @Description("Dependencies resolved in parallel")
+    static class ForkEvent extends Event {
+
+        @Label("Fan Out")
+        int fanOut;
+    }
+
+    @Name("lt.lb.caller.MemoWait")
+    @Label("Caller Memo Wait")
+    @Category("Caller")
+    @Description("Waiting for a memoized value, which is computed elsewhere")
+    static class MemoWaitEvent extends Event {
+    }
+
+    @Name("lt.lb.caller.LimitReached")
+    @Label("Caller Limit Reached")
+    @Category("Caller")
+    static class LimitEvent extends Event {
+
+        @Label("Limit")
+        String limit;
+
+        @Label("Value")
+        long value;
+    }
+
+    static Object resolutionBegin() {
+        ResolutionEvent event = new ResolutionEvent();
+        event.begin();
+        return event;
+    }
+
+    static void resolutionEnd(Object event, long calls, int maxDepth) {
+        ResolutionEvent e = (ResolutionEvent) event;
+        if (e.shouldCommit()) {
+            e.calls = calls;
+            e.maxDepth = maxDepth;
+            e.commit();
+        }
+    }
+
+    static Object forkBegin() {
+        ForkEvent event = new ForkEvent();
+        event.begin();
+        return event;
+    }
+
+    static void forkEnd(Object event, int fanOut) {
+        ForkEvent e = (ForkEvent) event;
+        if (e.shouldCommit()) {
+            e.fanOut = fanOut;
+            e.commit();
+        }
+    }
+
+    static Object memoWaitBegin() {
+        MemoWaitEvent event = new MemoWaitEvent();
+        event.begin();
+        return event;
+    }
+
+    static void memoWaitEnd(Object event) {
+        ((MemoWaitEvent) event).commit();
+    }
+
+    static void limitReached(String limit, long value) {
+        LimitEvent event = new LimitEvent();
+        if (event.isEnabled()) {
+            event.limit = limit;
+            event.value = value;
+            event.commit();
+        }
+    }
+
+}
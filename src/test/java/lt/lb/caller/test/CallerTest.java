@@ -1,22 +1,53 @@
 package lt.lb.caller.test;
 
+import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Random;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import lt.lb.caller.Caller;
+import lt.lb.caller.CallerBatch;
+import lt.lb.caller.CallerBuilder;
+import lt.lb.caller.CallerCell;
+import lt.lb.caller.CallerCheckpoint;
+import lt.lb.caller.CallerException;
+import lt.lb.caller.CallerHeapGuard;
+import lt.lb.caller.CallerImpl;
+import lt.lb.caller.CallerInterner;
+import lt.lb.caller.CallerListener;
+import lt.lb.caller.CallerNode;
+import lt.lb.caller.CallerResolve;
+import lt.lb.caller.CallerSpill;
 import lt.lb.caller.CallerWhileBuilder;
+import lt.lb.caller.util.CheckedException;
+import lt.lb.caller.util.IndexedIterator;
 import static lt.lb.caller.test.TreeBuilder.DFS;
 import static lt.lb.caller.test.TreeBuilder.DFSCaller;
 import lt.lb.caller.test.TreeBuilder.NodeVisitor;
@@ -116,6 +147,944 @@ public class CallerTest {
         );
     }
 
+    @Test
+    public void fixedArityTest() {
+        long seq = rng.nextInt(5) + 15;
+        multiAssert(
+                RecursionBuilder.fibb2(seq),
+                RecursionBuilder.fibb2Caller(seq).resolve(),
+                RecursionBuilder.fibb2CallerBinary(seq).resolve(),
+                RecursionBuilder.fibb2CallerBinary(seq).resolveThreaded()
+        );
+        int num = rng.nextInt(10) + 10;
+        multiAssert(
+                RecursionBuilder.factorial(num),
+                RecursionBuilder.factorialCallerUnary(num).resolve(),
+                RecursionBuilder.factorialCallerUnary(num).resolveThreaded()
+        );
+    }
+
+    @Test
+    public void loopTest() {
+        int iterations = 1000000;
+        AtomicInteger i = new AtomicInteger();
+        AtomicLong sum = new AtomicLong();
+        Long result = Caller.<Long>builderWhile()
+                .whilst(() -> i.get() < iterations)
+                .forEachCall(() -> Caller.ofResult((long) i.getAndIncrement()))
+                .evaluate(item -> {
+                    sum.addAndGet(item);
+                    return Caller.flowContinue();
+                })
+                .afterwards(Caller.ofCallableResult(() -> sum.get()))
+                .build().resolve();
+        multiAssert(result, (long) iterations * (iterations - 1) / 2);
+
+        AtomicInteger j = new AtomicInteger();
+        Integer found = Caller.<Integer>builderWhile()
+                .whilst(() -> true)
+                .forEachCall(() -> Caller.ofCallableResult(() -> j.incrementAndGet()))
+                .evaluate(item -> item >= 1000 ? Caller.flowReturn(item) : Caller.flowContinue())
+                .afterwards(Caller.ofNull())
+                .build().resolve();
+        multiAssert(found, 1000);
+
+        AtomicInteger k = new AtomicInteger();
+        Integer once = Caller.<Integer>builderDoWhile()
+                .whilst(() -> false)
+                .forEachCall(() -> Caller.ofResult(k.incrementAndGet()))
+                .evaluate(item -> Caller.flowContinue())
+                .afterwards(Caller.ofCallableResult(() -> k.get()))
+                .build().resolve();
+        multiAssert(once, 1);
+
+        Caller<Integer> endless = Caller.<Integer>builderWhile()
+                .whilst(() -> true)
+                .forEachCall(() -> Caller.ofResult(1))
+                .evaluate(item -> Caller.flowContinue())
+                .afterwards(Caller.ofNull())
+                .build();
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            Assertions.assertThrows(CallerException.class, () -> endless.withArguments().setCallLimit(1000).resolveValue());
+        });
+    }
+
+    @Test
+    public void rangeLoopTest() {
+        int iterations = 100000;
+        AtomicLong sum = new AtomicLong();
+        Long result = Caller.<Long>builderForRange()
+                .range(0, iterations)
+                .forEachCall(i -> Caller.ofResult(i))
+                .evaluate((i, item) -> {
+                    sum.addAndGet(item);
+                    return Caller.flowContinue();
+                })
+                .afterwards(Caller.ofCallableResult(() -> sum.get()))
+                .build().resolve();
+        multiAssert(result, (long) iterations * (iterations - 1) / 2);
+
+        Long found = Caller.<Long>builderForRange()
+                .range(Long.MAX_VALUE - 10, Long.MAX_VALUE, 3)
+                .forEachCall(i -> Caller.ofResult(i))
+                .evaluate((i, item) -> i == Long.MAX_VALUE - 4 ? Caller.flowReturn(item) : Caller.flowContinue())
+                .build().resolve();
+        multiAssert(found, Long.MAX_VALUE - 4);
+
+        Integer[] data = new Integer[]{5, 3, 8, 1};
+        Integer index = Caller.<Integer, Integer>builderFor()
+                .with(data)
+                .forEachCallInt((i, item) -> Caller.ofResult(item))
+                .evaluateInt((i, item) -> item == 8 ? Caller.flowReturn(i) : Caller.flowContinue())
+                .afterwards(Caller.ofResult(-1))
+                .build().resolve();
+        multiAssert(index, 2);
+
+        // boxed index overloads
+        Integer lazy = CallerImpl.<Integer, Integer>ofIteratorLazy(Caller.ofResult(-1), new IndexedIterator<>(Arrays.asList(data).iterator()),
+                (i, item) -> Caller.ofResult(item),
+                (i, item) -> item == 8 ? Caller.flowReturn(i) : Caller.flowContinue()
+        ).resolve();
+        Integer bulk = CallerImpl.<Integer, Integer>ofIteratorLazyBulk(Caller.ofResult(-1), new IndexedIterator<>(Arrays.asList(data).iterator()),
+                (i, item) -> Caller.ofResult(item),
+                (i, item) -> item == 8 ? Caller.flowReturn(i) : Caller.flowContinue()
+        ).resolve();
+        multiAssert(index, lazy, bulk);
+    }
+
+    @Test
+    public void generatedDependencyTest() {
+        int count = 100000;
+        AtomicInteger generated = new AtomicInteger();
+        AtomicInteger resolved = new AtomicInteger();
+        AtomicInteger maxAlive = new AtomicInteger();
+        Caller<Long> caller = new CallerBuilder<Long>()
+                .withGenerated(count, i -> {
+                    int alive = generated.incrementAndGet() - resolved.get();
+                    maxAlive.accumulateAndGet(alive, Math::max);
+                    return Caller.ofCallableResult(() -> {
+                        resolved.incrementAndGet();
+                        return (long) i;
+                    });
+                })
+                .toResultCall(args -> {
+                    long sum = 0;
+                    for (Long l : args) {
+                        sum += l;
+                    }
+                    return sum;
+                });
+        long expected = (long) count * (count - 1) / 2;
+        multiAssert(caller.resolve(), expected);
+        multiAssert(maxAlive.get(), 1);
+        multiAssert(caller.resolveThreaded(), expected);
+    }
+
+    @Test
+    public void foldTest() {
+        int layers = rng.nextInt(2) + 3;
+        int children = rng.nextInt(5) + 5;
+        multiAssert(
+                RecursionBuilder.wideSum(layers, children, 1),
+                RecursionBuilder.wideSumCaller(layers, children, 1).resolve(),
+                RecursionBuilder.wideSumCaller(layers, children, 1).resolveThreaded()
+        );
+
+        Caller<String> concat = new CallerBuilder<String>()
+                .withRes("a").withRes("b").withRes("c")
+                .toFoldCall(new StringBuilder(), (sb, s) -> sb.append(s), sb -> Caller.ofResult(sb.toString()));
+        multiAssert(concat.resolve(), "abc");
+    }
+
+    @Test
+    public void reduceTest() {
+        int count = rng.nextInt(100) + 100;
+        StringBuilder expected = new StringBuilder();
+        CallerBuilder<String> builder = new CallerBuilder<>(count);
+        for (int i = 0; i < count; i++) {
+            String s = i + ",";
+            expected.append(s);
+            builder.with(Caller.ofCallableResult(() -> s));
+        }
+        Caller<String> concat = builder.toReduceResultCall(String::concat);
+        multiAssert(expected.toString(), concat.resolve(), concat.resolveThreaded());
+
+        int n = rng.nextInt(50) + 50;
+        Caller<BigInteger> product = new CallerBuilder<BigInteger>()
+                .withGenerated(n, i -> Caller.ofResult(BigInteger.valueOf(i + 1)))
+                .toReduceResultCall(BigInteger::multiply);
+        multiAssert(RecursionBuilder.factorial(n), product.resolve(), product.resolveThreaded());
+    }
+
+    @Test
+    public void internTest() {
+        int n = 12;
+        long expected = RecursionBuilder.gridPaths(n, n);
+
+        AtomicLong calls = new AtomicLong();
+        multiAssert(expected, RecursionBuilder.gridPathsCaller(n, n, calls).resolve());
+        multiAssert(calls.get(), (long) (n + 1) * (n + 1) - 1); // corner (0,0) is never reached
+
+        calls.set(0);
+        multiAssert(expected, RecursionBuilder.gridPathsCaller(n, n, calls).resolveThreaded());
+        multiAssert(calls.get(), (long) (n + 1) * (n + 1) - 1);
+
+        // shared table between resolutions
+        calls.set(0);
+        CallerInterner interner = new CallerInterner();
+        multiAssert(expected, RecursionBuilder.gridPathsCaller(n, n, calls).withArguments().setInterner(interner).resolveValue());
+        multiAssert(expected, RecursionBuilder.gridPathsCaller(n, n, calls).withArguments().setInterner(interner).resolveValue());
+        multiAssert(calls.get(), (long) (n + 1) * (n + 1) - 1);
+
+        AtomicInteger count = new AtomicInteger();
+        Caller<Integer> dup = Caller.ofCallableResult(() -> count.incrementAndGet());
+        Caller<Integer> sum = new CallerBuilder<Integer>()
+                .with(dup, dup, dup)
+                .shareDuplicates()
+                .toResultCall(args -> args._0 + args._1 + args._2);
+        multiAssert(sum.resolve(), 3);
+        multiAssert(count.get(), 1);
+    }
+
+    @Test
+    public void checkpointTest() throws IOException {
+        int n = 3000;
+        BigInteger fact = RecursionBuilder.factorial(n);
+        RecursionBuilder.factorialSumMemoCalls.set(0);
+        Caller<BigInteger> sum = RecursionBuilder.factorialSumCallerSerializable(n);
+
+        Path file = Files.createTempFile("caller", ".checkpoint");
+        Files.delete(file);
+        CallerResolve args = Caller.singleThreadDefaultResolve.setCheckpoint(new CallerCheckpoint(file, 0));
+
+        // crash in the middle of computing memoized value
+        Assertions.assertThrows(CallerException.class, () -> sum.withArguments(args).setCallLimit(n).resolveValue());
+        Assertions.assertTrue(Files.exists(file));
+
+        multiAssert(Assertions.assertTimeoutPreemptively(Duration.ofSeconds(30), () -> args.<BigInteger>resume(file)), fact.add(fact));
+        Assertions.assertFalse(Files.exists(file));
+        multiAssert(RecursionBuilder.factorialSumMemoCalls.get(), 1L); // memoized caller is still shared after resume
+
+        // keyed caller table is checkpointed too
+        int k = 30;
+        long binomial = 1; // C(2k, k)
+        for (int i = 1; i <= k; i++) {
+            binomial = binomial * (k + i) / i;
+        }
+        Caller<Long> paths = RecursionBuilder.gridPathsCaller(k, k, new AtomicLong());
+        Assertions.assertThrows(CallerException.class, () -> paths.withArguments(args).setCallLimit(1500).resolveValue());
+        Assertions.assertTrue(Files.exists(file));
+        multiAssert(args.<Long>resume(file), binomial);
+        Assertions.assertFalse(Files.exists(file));
+
+        // failed checkpoint does not fail resolution
+        Caller<BigInteger> plain = RecursionBuilder.factorialCaller(n);
+        multiAssert(args.resolveValue(plain), fact);
+        Assertions.assertFalse(Files.exists(file));
+        Assertions.assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".tmp")));
+    }
+
+    @Test
+    public void spillTest() throws IOException {
+        int n = 5000;
+        BigInteger fact = BigInteger.ONE;
+        for (int i = 2; i <= n; i++) {
+            fact = fact.multiply(BigInteger.valueOf(i));
+        }
+        Caller<BigInteger> sum = RecursionBuilder.factorialSumCallerSerializable(n);
+
+        Path dir = Files.createTempDirectory("caller");
+        CallerResolve args = Caller.singleThreadDefaultResolve.setSpill(new CallerSpill(dir, 64));
+        multiAssert(args.resolveValue(sum), fact.add(fact));
+        multiAssert(args.resolveValue(RecursionBuilder.factorialCallerSerializable(n)), fact);
+
+        // stack limit counts spilled frames too
+        CallerException ex = Assertions.assertThrows(CallerException.class, () -> args.setStackLimit(n).resolveValue(RecursionBuilder.factorialCallerSerializable(n)));
+        Assertions.assertTrue(ex.getMessage().startsWith("Stack limit"));
+
+        // stack depth going back and forth over hot frame edge
+        CallerResolve edge = Caller.singleThreadDefaultResolve.setSpill(new CallerSpill(dir, 16));
+        RecursionBuilder.SwingMarker marker = new RecursionBuilder.SwingMarker();
+        RecursionBuilder.swingMarkerWrites.set(0);
+        multiAssert(edge.resolveValue(RecursionBuilder.swingCaller(7, 100, 8, marker)), 100L);
+        multiAssert(RecursionBuilder.swingMarkerWrites.get(), 0L);
+        // deeper, so segments are written, but not for every swing
+        RecursionBuilder.swingMarkerWrites.set(0);
+        multiAssert(edge.resolveValue(RecursionBuilder.swingCaller(40, 100, 8, marker)), 100L);
+        Assertions.assertTrue(RecursionBuilder.swingMarkerWrites.get() > 0);
+        Assertions.assertTrue(RecursionBuilder.swingMarkerWrites.get() < 10);
+        try (Stream<Path> files = Files.list(dir)) {
+            multiAssert(files.count(), 0L);
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void heapGuardTest() {
+        long seq = 15;
+        AtomicInteger forks = new AtomicInteger();
+        CallerResolve args = Caller.threadedDefaultResolve.setExecutor(r -> {
+            forks.incrementAndGet();
+            ForkJoinPool.commonPool().execute(r);
+        });
+        multiAssert(RecursionBuilder.fibb2(seq), args.resolveValue(RecursionBuilder.fibb2CallerBinary(seq)));
+        Assertions.assertTrue(forks.get() > 0);
+
+        // over fork limit, so resolved inline
+        forks.set(0);
+        CallerResolve guarded = args.setHeapGuard(new CallerHeapGuard(Double.MIN_VALUE, 1));
+        multiAssert(RecursionBuilder.fibb2(seq), guarded.resolveValue(RecursionBuilder.fibb2CallerBinary(seq)));
+        multiAssert(forks.get(), 0);
+
+        // over fail limit
+        CallerResolve failing = Caller.singleThreadDefaultResolve.setHeapGuard(new CallerHeapGuard(Double.MIN_VALUE, Double.MIN_VALUE));
+        Assertions.assertThrows(CallerException.class, () -> failing.resolveValue(RecursionBuilder.factorialCaller(3000)));
+        multiAssert(failing.resolveValue(RecursionBuilder.factorialCaller(100)), RecursionBuilder.factorial(100));
+        // shallow, but wide
+        Assertions.assertThrows(CallerException.class, () -> failing.resolveValue(RecursionBuilder.wideSumCaller(2, 100, 1)));
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new CallerHeapGuard(0, 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new CallerHeapGuard(0.5, 1.5));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new CallerHeapGuard(0.9, 0.5));
+    }
+
+    @Test
+    public void inFlightForkTest() {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        Caller<Long> leaf = Caller.ofCallableResult(() -> {
+            peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+            Thread.sleep(2);
+            active.decrementAndGet();
+            return 1L;
+        });
+        Caller<Long> tree = new CallerBuilder<Long>()
+                .withGenerated(8, i -> new CallerBuilder<Long>().withGenerated(8, j -> leaf).toReduceResultCall(Long::sum))
+                .toReduceResultCall(Long::sum);
+
+        multiAssert(tree.withThreadedArguments().setMaxInFlightForks(2).resolveValue(), 64L);
+        // calling thread and 2 forks
+        Assertions.assertTrue(peak.get() <= 3, "Peak " + peak.get());
+
+        peak.set(0);
+        multiAssert(tree.withThreadedArguments().setMaxInFlightForks(0).resolveValue(), 64L);
+    }
+
+    @Test
+    public void leanTest() {
+        long seq = 15;
+        multiAssert(RecursionBuilder.fibb2(seq),
+                RecursionBuilder.fibb2CallerBinary(seq).withArguments().setLean(true).resolveValue(),
+                RecursionBuilder.fibb2CallerBinary(seq).withThreadedArguments().setLean(true).resolveValue(),
+                RecursionBuilder.fibb2Caller(seq).withThreadedArguments().setLean(true).resolveValue()
+        );
+        multiAssert(RecursionBuilder.factorial(100), RecursionBuilder.factorialCaller(100).withArguments().setLean(true).resolveValue());
+
+        // callers are not changed, so they can be resolved again and builders reused
+        List<Function<CallerBuilder<Object>, Caller<Object>>> builds = Arrays.asList(
+                b -> b.toResultCall(args -> args.get(1)),
+                b -> b.toFoldCall(null, (acc, v) -> v, Caller::ofResult),
+                b -> b.toReduceCall((v0, v1) -> v1, Caller::ofResult),
+                b -> b.toAnyCall(v -> v instanceof Long)
+        );
+        CallerBuilder<Object> shared = new CallerBuilder<Object>().with(Caller.ofCallableResult(() -> "first"), Caller.ofCallableResult(() -> 2L));
+        List<Caller<Object>> reused = builds.stream().map(b -> b.apply(shared)).collect(Collectors.toList());
+        for (CallerResolve lean : Arrays.asList(Caller.singleThreadDefaultResolve.setLean(true), Caller.threadedDefaultResolve.setLean(true))) {
+            for (int i = 0; i < 2; i++) {
+                for (Caller<Object> caller : reused) {
+                    multiAssert(lean.resolveValue(caller), 2L);
+                }
+                multiAssert(lean.resolveValue(RecursionBuilder.fibb2CallerBinary(seq)), RecursionBuilder.fibb2(seq));
+            }
+            CallerCell<Long> cell = Caller.ofCell(1L);
+            CallerNode<Long> node = new CallerBuilder<Long>().with(cell, Caller.ofResult(2L)).toNodeResult(args -> args._0 + args._1);
+            multiAssert(lean.resolveValue(node), 3L);
+            cell.set(10L);
+            multiAssert(lean.resolveValue(node), 12L);
+        }
+
+        // consumed dependency of a generated caller is collectable before resolution ends
+        for (boolean lean : new boolean[]{false, true}) {
+            for (Function<CallerBuilder<Object>, Caller<Object>> build : builds) {
+                AtomicReference<WeakReference<Caller<Object>>> ref = new AtomicReference<>();
+                Caller<Object> collected = Caller.ofCallableResult(() -> {
+                    for (int i = 0; i < 10 && ref.get().get() != null; i++) {
+                        System.gc();
+                    }
+                    return ref.get().get() == null ? 2L : 1L;
+                });
+                Caller<Object> root = Caller.ofFunction(args -> {
+                    Caller<Object> consumed = Caller.ofCallableResult(() -> new long[1 << 16]);
+                    ref.set(new WeakReference<>(consumed));
+                    return build.apply(new CallerBuilder<Object>().with(consumed, collected));
+                });
+                multiAssert(root.withArguments().setLean(lean).resolveValue(), lean ? 2L : 1L);
+            }
+        }
+    }
+
+    @Test
+    public void memoRetentionTest() {
+        AtomicInteger count = new AtomicInteger();
+        Caller<Long> compute = RecursionBuilder.countedResultCaller(count, 5L);
+
+        Caller<Long> counted = Caller.ofMemoCounted(compute, 2);
+        multiAssert(RecursionBuilder.twiceCaller(counted).resolveThreaded(), 10L);
+        multiAssert(count.get(), 1);
+        Assertions.assertThrows(CallerException.class, counted::resolve);
+
+        count.set(0);
+        Caller<Long> soft = Caller.ofMemoSoft(compute);
+        multiAssert(RecursionBuilder.twiceCaller(soft).resolve(), 10L);
+        multiAssert(soft.resolveThreaded(), 5L);
+        multiAssert(count.get(), 1);
+
+        Caller<Long> softNull = Caller.ofMemoSoft(RecursionBuilder.countedResultCaller(count, null));
+        count.set(0);
+        multiAssert(softNull.resolve(), softNull.resolve(), null);
+        multiAssert(count.get(), 1);
+    }
+
+    @Test
+    public void incrementalTest() {
+        AtomicInteger sums = new AtomicInteger();
+        AtomicInteger products = new AtomicInteger();
+        AtomicInteger others = new AtomicInteger();
+        CallerCell<Long> a = Caller.ofCell(1L);
+        CallerCell<Long> b = Caller.ofCell(2L);
+        CallerCell<Long> c = Caller.ofCell(3L);
+        CallerNode<Long> sum = RecursionBuilder.countedNode(sums, args -> args._0 + args._1, a, b);
+        CallerNode<Long> product = RecursionBuilder.countedNode(products, args -> args._0 * args._1, sum, c);
+        CallerNode<Long> other = RecursionBuilder.countedNode(others, args -> -args._0, c);
+        Caller<Long> both = Caller.ofBinaryResult(product, other, Long::sum);
+
+        multiAssert(both.resolve(), both.resolveThreaded(), 9L - 3L);
+        multiAssert(Arrays.asList(sums.get(), products.get(), others.get()), Arrays.asList(1, 1, 1));
+
+        a.set(10L);
+        Assertions.assertFalse(sum.isValid());
+        Assertions.assertFalse(product.isValid());
+        Assertions.assertTrue(other.isValid());
+        multiAssert(both.resolve(), 36L - 3L);
+        multiAssert(Arrays.asList(sums.get(), products.get(), others.get()), Arrays.asList(2, 2, 1));
+
+        c.set(1L);
+        multiAssert(both.resolve(), 12L - 1L);
+        multiAssert(Arrays.asList(sums.get(), products.get(), others.get()), Arrays.asList(2, 3, 2));
+
+        sum.invalidate();
+        multiAssert(both.resolve(), 12L - 1L);
+        multiAssert(Arrays.asList(sums.get(), products.get(), others.get()), Arrays.asList(3, 4, 2));
+    }
+
+    @Test
+    public void asyncTest() throws Exception {
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        Caller<Long> pending = Caller.ofAsync(() -> {
+            CompletableFuture<Long> future = new CompletableFuture<>();
+            futures.add(future);
+            return future;
+        });
+        Caller<Long> root = new CallerBuilder<Long>()
+                .with(pending, RecursionBuilder.recSumCaller(100), pending, Caller.ofFuture(CompletableFuture.completedFuture(1L)), pending)
+                .toResultCall(args -> args._0 * 100 + args._1 + args._2 * 10 + args._3 + args._4 * 1000);
+        long expected = 100 + RecursionBuilder.recSum(100) + 20 + 1 + 3000;
+
+        CompletableFuture<Long> result = Caller.singleThreadDefaultResolve.resolveAsync(root);
+        Assertions.assertFalse(result.isDone());
+        // every pending leaf is started, while other dependencies are resolved
+        multiAssert(futures.size(), 3);
+        futures.get(0).complete(1L);
+        futures.get(2).complete(3L);
+        Assertions.assertFalse(result.isDone());
+        futures.get(1).complete(2L);
+        multiAssert(result.get(), expected);
+
+        // blocking resolution
+        Caller<Long> remote = Caller.ofAsync(() -> CompletableFuture.supplyAsync(() -> 2L));
+        multiAssert(Caller.ofBinaryResult(remote, Caller.ofUnaryResult(remote, x -> x * 3), Long::sum).resolve(), 8L);
+
+        CompletableFuture<Long> leaf = new CompletableFuture<>();
+        CompletableFuture<Long> single = Caller.singleThreadDefaultResolve.resolveAsync(Caller.ofFuture(leaf));
+        Assertions.assertFalse(single.isDone());
+        leaf.completeExceptionally(new IllegalStateException("failed"));
+        Assertions.assertTrue(single.isCompletedExceptionally());
+        Assertions.assertThrows(CheckedException.class, () -> Caller.ofFuture(leaf).resolve());
+    }
+
+    @Test
+    public void batchTest() throws Exception {
+        long size = 15;
+        List<Integer> batchSizes = new ArrayList<>();
+        AtomicLong loaded = new AtomicLong();
+        CallerBatch<Long, Long> batch = Caller.ofBatch(keys -> {
+            synchronized (batchSizes) {
+                batchSizes.add(keys.size());
+            }
+            Map<Long, Long> values = new HashMap<>();
+            for (Long key : keys) {
+                loaded.incrementAndGet();
+                values.put(key, key);
+            }
+            return values;
+        });
+        long expected = size * (size - 1) / 2;
+        // one batch per tree level
+        multiAssert(RecursionBuilder.batchTreeCaller(batch, 0, size).resolve(), expected);
+        multiAssert(batchSizes, Arrays.asList(1, 2, 4, 8));
+
+        loaded.set(0);
+        multiAssert(Caller.threadedDefaultResolve.resolveAsync(RecursionBuilder.batchTreeCaller(batch, 0, size)).get(), expected);
+        multiAssert(RecursionBuilder.batchTreeCaller(batch, 0, size).resolveThreaded(), expected);
+        multiAssert(loaded.get(), size * 2);
+
+        Caller<Long> missing = Caller.ofBatch((Collection<Long> keys) -> new HashMap<Long, Long>()).get(1L);
+        Assertions.assertThrows(CheckedException.class, () -> missing.resolve());
+    }
+
+    @Test
+    public void lazyTest() throws Exception {
+        AtomicInteger resolved = new AtomicInteger();
+        Caller<Long> counted = Caller.ofCallableResult(() -> {
+            resolved.incrementAndGet();
+            return 5L;
+        });
+        Caller<Long> failing = Caller.ofCallableResult(() -> {
+            throw new IllegalStateException("should not be resolved");
+        });
+        Caller<Long> or = new CallerBuilder<Long>().with(counted, failing)
+                .toLazyCall(deps -> Caller.ofUnary(deps._0, v -> v != null ? Caller.ofResult(v) : deps._1));
+        multiAssert(or.resolve(), 5L);
+        multiAssert(resolved.get(), 1);
+
+        // demanded twice, resolved once
+        resolved.set(0);
+        Caller<Long> twice = new CallerBuilder<Long>().with(counted)
+                .toLazyCall(deps -> Caller.ofBinaryResult(deps._0, deps._0, Long::sum));
+        multiAssert(twice.resolve(), 10L);
+        multiAssert(resolved.get(), 1);
+
+        // duplicates are shared as with eager dependencies
+        resolved.set(0);
+        Caller<Long> shared = new CallerBuilder<Long>().with(counted, counted).shareDuplicates()
+                .toLazyCall(deps -> Caller.ofBinaryResult(deps._0, deps._1, Long::sum));
+        multiAssert(shared.resolve(), 10L);
+        multiAssert(resolved.get(), 1);
+
+        AtomicInteger generated = new AtomicInteger();
+        Caller<Long> first = new CallerBuilder<Long>().withGenerated(1000, i -> {
+            generated.incrementAndGet();
+            return Caller.ofResult((long) i);
+        }).toLazyCall(deps -> deps._0);
+        multiAssert(first.resolveThreaded(), 0L);
+        multiAssert(generated.get(), 1);
+
+        // deep short-circuit chain stays on explicit stack
+        multiAssert(RecursionBuilder.lazyFindCaller(0, 100000).resolve(), 100000L);
+    }
+
+    @Test
+    public void raceTest() throws Exception {
+        Caller<Long> failing = Caller.ofCallableResult(() -> {
+            throw new IllegalStateException("should not be resolved");
+        });
+        Caller<Long> first = new CallerBuilder<Long>().with(Caller.ofNull(), Caller.ofResult(2L), failing).toFirstNonNullCall();
+        multiAssert(first.resolve(), 2L);
+        multiAssert(new CallerBuilder<Long>().with(Caller.ofResult(1L), Caller.ofResult(3L))
+                .toAnyCall(v -> v % 2 == 0, Caller.ofResult(-1L)).resolveThreaded(), -1L);
+
+        // losers never finish, so they must be cancelled, nested forks included
+        AtomicLong steps = new AtomicLong();
+        Caller<Long> spinning = new CallerBuilder<Long>()
+                .with(RecursionBuilder.spinCaller(steps), RecursionBuilder.spinCaller(steps))
+                .toResultCall(args -> args._0 + args._1);
+        Caller<Long> fast = Caller.ofCallableResult(() -> {
+            Thread.sleep(50);
+            return 42L;
+        });
+        Caller<Long> race = new CallerBuilder<Long>().with(fast, spinning, RecursionBuilder.spinCaller(steps)).toFirstNonNullCall();
+        Long winner = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> race.resolveThreaded());
+        multiAssert(winner, 42L);
+        Thread.sleep(200);
+        long stopped = steps.get();
+        Thread.sleep(200);
+        multiAssert(steps.get(), stopped);
+        Assertions.assertTrue(stopped > 0);
+    }
+
+    @Test
+    public void cancelScopeTest() throws Exception {
+        // siblings never finish, so the failure must cancel them, nested forks included
+        AtomicLong steps = new AtomicLong();
+        Caller<Long> failing = Caller.ofCallableResult(() -> {
+            Thread.sleep(50);
+            throw new IllegalStateException("deep failure");
+        });
+        Caller<Long> failingNested = new CallerBuilder<Long>()
+                .with(failing, RecursionBuilder.spinCaller(steps))
+                .toResultCall(args -> args._0 + args._1);
+        Caller<Long> spinningNested = new CallerBuilder<Long>()
+                .with(RecursionBuilder.spinCaller(steps), RecursionBuilder.spinCaller(steps))
+                .toResultCall(args -> args._0 + args._1);
+        Caller<Long> root = new CallerBuilder<Long>().with(spinningNested, failingNested).toResultCall(args -> args._0 + args._1);
+
+        Throwable error = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            return Assertions.assertThrows(Throwable.class, () -> root.resolveThreaded());
+        });
+        while (error.getCause() != null && !"deep failure".equals(error.getMessage())) {
+            error = error.getCause();
+        }
+        multiAssert(error.getMessage(), "deep failure");
+        Thread.sleep(200);
+        long stopped = steps.get();
+        Thread.sleep(200);
+        multiAssert(steps.get(), stopped);
+    }
+
+    @Test
+    public void memoHelpTest() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean memoDone = new AtomicBoolean();
+        AtomicBoolean workedWhileWaiting = new AtomicBoolean();
+        Caller<Long> memo = Caller.ofCallableResultMemo(() -> {
+            started.countDown();
+            Thread.sleep(300);
+            memoDone.set(true);
+            return 1L;
+        });
+        Caller<Long> afterStart = Caller.ofCallableResult(() -> {
+            started.await();
+            return 0L;
+        });
+        Caller<Long> work = Caller.ofCallableResult(() -> {
+            workedWhileWaiting.set(!memoDone.get());
+            return 2L;
+        });
+        Caller<Long> waiting = new CallerBuilder<Long>().with(afterStart, memo, work).toResultCall(args -> args._0 + args._1 + args._2);
+        Caller<Long> root = new CallerBuilder<Long>().with(memo, waiting).toResultCall(args -> args._0 + args._1);
+        // only the root is forked, so memo is started by one fork and needed by the other
+        multiAssert(Caller.threadedDefaultResolve.setForkCount(1).resolveValue(root), 4L);
+        Assertions.assertTrue(workedWhileWaiting.get());
+    }
+
+    @Test
+    public void memoCycleTest() throws Exception {
+        AtomicReference<Caller<Long>> self = new AtomicReference<>();
+        Caller<Long> cyclic = Caller.ofCallableMemo(() -> Caller.ofUnaryResult(self.get(), x -> x + 1));
+        self.set(cyclic);
+        CallerException ex = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            return Assertions.assertThrows(CallerException.class, () -> cyclic.resolve());
+        });
+        Assertions.assertTrue(ex.getMessage().contains("cycle"));
+
+        // computing frame is spilled, when memoized caller waits for itself
+        Path dir = Files.createTempDirectory("caller");
+        CallerResolve spilled = Caller.singleThreadDefaultResolve.setSpill(new CallerSpill(dir, 16));
+        CallerException deep = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            return Assertions.assertThrows(CallerException.class, () -> spilled.resolveValue(RecursionBuilder.selfDependentMemo(100)));
+        });
+        Assertions.assertTrue(deep.getMessage().contains("cycle"));
+        Files.delete(dir);
+
+        // memoized callers started on different threads wait for each other
+        CountDownLatch started = new CountDownLatch(2);
+        AtomicReference<Caller<Long>> other = new AtomicReference<>();
+        Caller<Long> first = Caller.ofCallableMemo(() -> {
+            started.countDown();
+            started.await();
+            return Caller.ofUnaryResult(other.get(), x -> x + 1);
+        });
+        Caller<Long> second = Caller.ofCallableMemo(() -> {
+            started.countDown();
+            started.await();
+            return Caller.ofUnaryResult(first, x -> x + 1);
+        });
+        other.set(second);
+        Caller<Long> root = new CallerBuilder<Long>().with(first, second).toResultCall(args -> args._0 + args._1);
+        Throwable error = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            return Assertions.assertThrows(Throwable.class, () -> Caller.threadedDefaultResolve.setForkCount(1).resolveValue(root));
+        });
+        while (!(error instanceof CallerException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        Assertions.assertTrue(error instanceof CallerException);
+    }
+
+    static class CountingListener implements CallerListener {
+
+        final AtomicLong push = new AtomicLong();
+        final AtomicLong pop = new AtomicLong();
+        final AtomicLong invokeStart = new AtomicLong();
+        final AtomicLong invokeEnd = new AtomicLong();
+        final AtomicLong dispatch = new AtomicLong();
+        final AtomicLong join = new AtomicLong();
+        final AtomicLong hit = new AtomicLong();
+        final AtomicLong miss = new AtomicLong();
+        final List<Object> resolved = new ArrayList<>();
+
+        @Override
+        public void framePush(Caller<?> caller, int depth) {
+            push.incrementAndGet();
+        }
+
+        @Override
+        public void framePop(Caller<?> caller, int depth) {
+            pop.incrementAndGet();
+        }
+
+        @Override
+        public void invokeStart(Caller<?> caller) {
+            invokeStart.incrementAndGet();
+        }
+
+        @Override
+        public void invokeEnd(Caller<?> caller, Caller<?> next) {
+            invokeEnd.incrementAndGet();
+        }
+
+        @Override
+        public void forkDispatch(Caller<?> caller, int fanOut) {
+            dispatch.incrementAndGet();
+        }
+
+        @Override
+        public void forkJoin(Caller<?> caller, int fanOut) {
+            join.incrementAndGet();
+        }
+
+        @Override
+        public void memoHit(Caller<?> memo) {
+            hit.incrementAndGet();
+        }
+
+        @Override
+        public void memoMiss(Caller<?> memo) {
+            miss.incrementAndGet();
+        }
+
+        @Override
+        public synchronized void resolved(Object value, Throwable error) {
+            resolved.add(value);
+        }
+
+        long total() {
+            return push.get() + pop.get() + invokeStart.get() + invokeEnd.get() + dispatch.get() + join.get() + hit.get() + miss.get() + resolved.size();
+        }
+    }
+
+    static class TracingListener extends CountingListener {
+
+        final Map<Caller<?>, String> names = new IdentityHashMap<>();
+        final List<String> trace = new ArrayList<>();
+
+        TracingListener name(Caller<?> caller, String name) {
+            names.put(caller, name);
+            return this;
+        }
+
+        synchronized void trace(Caller<?> caller, String event) {
+            trace.add(names.getOrDefault(caller, "?") + " " + event);
+        }
+
+        @Override
+        public void framePush(Caller<?> caller, int depth) {
+            super.framePush(caller, depth);
+            trace(caller, "push " + depth);
+        }
+
+        @Override
+        public void framePop(Caller<?> caller, int depth) {
+            super.framePop(caller, depth);
+            trace(caller, "pop " + depth);
+        }
+
+        @Override
+        public void forkDispatch(Caller<?> caller, int fanOut) {
+            super.forkDispatch(caller, fanOut);
+            trace(caller, "fork " + fanOut);
+        }
+
+        @Override
+        public void forkJoin(Caller<?> caller, int fanOut) {
+            super.forkJoin(caller, fanOut);
+            trace(caller, "join " + fanOut);
+        }
+
+        @Override
+        public void memoHit(Caller<?> memo) {
+            super.memoHit(memo);
+            trace(memo, "hit");
+        }
+
+        @Override
+        public void memoMiss(Caller<?> memo) {
+            super.memoMiss(memo);
+            trace(memo, "miss");
+        }
+    }
+
+    @Test
+    public void listenerSequenceTest() {
+        Caller<Long> memo = Caller.ofCallableResultMemo(() -> 2L);
+        Caller<Long> root = Caller.ofBinaryResult(memo, memo, (a, b) -> a + b);
+        TracingListener single = new TracingListener().name(memo, "memo").name(root, "root");
+        multiAssert(Caller.singleThreadDefaultResolve.setListener(single).resolveValue(root), 4L);
+        multiAssert(single.trace, Arrays.asList(
+                "root push 1",
+                "memo miss",
+                "memo push 2",
+                "memo pop 2",
+                "memo hit",
+                "root pop 1"
+        ));
+
+        // memo is done, so nothing is actually forked to other threads
+        Caller<Long> forked = Caller.ofBinaryResult(Caller.ofResult(1L), memo, (a, b) -> a + b);
+        TracingListener threaded = new TracingListener().name(memo, "memo").name(forked, "root");
+        multiAssert(Caller.threadedDefaultResolve.setListener(threaded).resolveValue(forked), 3L);
+        multiAssert(threaded.trace, Arrays.asList(
+                "root push 1",
+                "root fork 2",
+                "memo hit",
+                "root join 2",
+                "root pop 1"
+        ));
+    }
+
+    @Test
+    public void listenerTest() {
+        int n = 6;
+        long expected = RecursionBuilder.gridPaths(n, n);
+
+        CountingListener single = new CountingListener();
+        AtomicLong calls = new AtomicLong();
+        multiAssert(RecursionBuilder.gridPathsListened(Caller.singleThreadDefaultResolve, single, n, calls), expected);
+        multiAssert(single.resolved, Arrays.asList(expected));
+        multiAssert(single.push.get(), single.pop.get());
+        Assertions.assertTrue(single.push.get() > 0);
+        multiAssert(single.invokeStart.get(), single.invokeEnd.get());
+        multiAssert(single.miss.get(), calls.get()); // each keyed value is computed once
+        Assertions.assertTrue(single.hit.get() > 0);
+        multiAssert(single.dispatch.get(), 0L);
+
+        CountingListener threaded = new CountingListener();
+        multiAssert(RecursionBuilder.gridPathsListened(Caller.threadedDefaultResolve, threaded, n, new AtomicLong()), expected);
+        multiAssert(threaded.resolved, Arrays.asList(expected));
+        Assertions.assertTrue(threaded.dispatch.get() > 0);
+        multiAssert(threaded.dispatch.get(), threaded.join.get());
+        multiAssert(threaded.invokeStart.get(), threaded.invokeEnd.get());
+
+        CountingListener failing = new CountingListener();
+        Caller<Long> fail = Caller.ofCallable(() -> {
+            throw new IllegalStateException("fail");
+        });
+        Assertions.assertThrows(Throwable.class, () -> Caller.singleThreadDefaultResolve.setListener(failing).resolveValue(fail));
+        multiAssert(failing.invokeStart.get(), failing.invokeEnd.get(), 1L);
+        multiAssert(failing.resolved.size(), 1);
+
+        // removed listener is never notified
+        CallerListener removed = new CountingListener();
+        CallerResolve args = Caller.singleThreadDefaultResolve.setListener(removed).setListener(null);
+        Assertions.assertNull(args.listener);
+        Assertions.assertNull(Caller.threadedDefaultResolve.listener);
+        multiAssert(args.resolveValue(RecursionBuilder.gridPathsCaller(n, n, new AtomicLong())), expected);
+        multiAssert(((CountingListener) removed).total(), 0L);
+
+        // resolver loop is chosen once, without a listener it has no hooks
+        for (CallerResolve resolve : Arrays.asList(Caller.singleThreadDefaultResolve, Caller.threadedDefaultResolve)) {
+            multiAssert(resolve.resolveValue(RecursionBuilder.resolverLoopCaller()), "resolveLoop");
+            multiAssert(resolve.setListener(new CallerListener() {
+            }).resolveValue(RecursionBuilder.resolverLoopCaller()), "resolveListenedLoop");
+        }
+    }
+
+    @Test
+    public void memoFailureTest() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Caller<Long> leaf = Caller.ofCallableMemo(() -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("leaf failed");
+        });
+        Caller<Long> inner = new CallerBuilder<Long>().with(Caller.ofResult(1L)).toCallMemo(args -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("inner failed");
+        });
+        for (Caller<Long> memo : Arrays.asList(leaf, inner)) {
+            calls.set(0);
+            Caller<Long> first = Caller.ofUnaryResult(memo, x -> x + 1);
+            Caller<Long> second = Caller.ofUnaryResult(memo, x -> x * 2);
+            Assertions.assertThrows(Throwable.class, () -> first.resolve());
+            // same thread waits again, neither a cycle nor a hang
+            Throwable same = Assertions.assertThrows(Throwable.class, () -> second.resolve());
+            Assertions.assertFalse(same instanceof CallerException, same.toString());
+            Throwable other = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                return Assertions.assertThrows(Throwable.class, () -> second.resolve());
+            });
+            Assertions.assertFalse(other instanceof CallerException, other.toString());
+            Assertions.assertTrue(String.valueOf(same.getMessage()).contains("failed"), same.toString());
+            multiAssert(calls.get(), 1);
+        }
+    }
+
+    @Test
+    public void resolveAllTest() {
+        int n = 10;
+        AtomicLong calls = new AtomicLong();
+        List<Caller<Long>> callers = new ArrayList<>();
+        List<Long> expected = new ArrayList<>();
+        for (int i = 1; i <= n; i++) {
+            callers.add(RecursionBuilder.gridPathsCaller(i, n, calls));
+            expected.add(RecursionBuilder.gridPaths(i, n));
+        }
+        multiAssert(expected, Caller.singleThreadDefaultResolve.resolveAll(callers));
+        multiAssert(calls.get(), (long) (n + 1) * (n + 1) - 1);
+
+        calls.set(0);
+        multiAssert(expected, Caller.threadedDefaultResolve.resolveAll(callers));
+        multiAssert(calls.get(), (long) (n + 1) * (n + 1) - 1);
+
+        Assertions.assertThrows(CallerException.class, () -> {
+            Caller.singleThreadDefaultResolve.setCallLimit(50).resolveAll(callers);
+        });
+    }
+
+    @Test
+    public void resolveStreamTest() {
+        int size = 200;
+        int concurrency = 4;
+        AtomicInteger pulled = new AtomicInteger();
+        AtomicInteger consumed = new AtomicInteger();
+        AtomicInteger maxAhead = new AtomicInteger();
+        Stream<Integer> input = IntStream.range(0, size).boxed().peek(i -> {
+            maxAhead.accumulateAndGet(pulled.incrementAndGet() - consumed.get(), Math::max);
+        });
+        List<BigInteger> ordered = Caller.threadedDefaultResolve
+                .resolveStream(input, i -> RecursionBuilder.factorialCaller(i), concurrency, true)
+                .peek(r -> consumed.incrementAndGet())
+                .collect(Collectors.toList());
+        List<BigInteger> expected = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            expected.add(RecursionBuilder.factorial(i));
+        }
+        multiAssert(expected, ordered);
+        Assertions.assertTrue(maxAhead.get() <= concurrency + 1, "Pulled ahead " + maxAhead.get());
+
+        List<BigInteger> unordered = Caller.threadedDefaultResolve
+                .resolveStream(IntStream.range(0, size).boxed(), i -> RecursionBuilder.factorialCaller(i), concurrency, false)
+                .sorted()
+                .collect(Collectors.toList());
+        multiAssert(expected, unordered);
+
+        // null values pass through, failures are not wrapped
+        List<Long> nulls = Caller.threadedDefaultResolve
+                .resolveStream(IntStream.range(0, 4).boxed(), i -> i % 2 == 0 ? Caller.<Long>ofNull() : Caller.ofResult((long) i), 2, true)
+                .collect(Collectors.toList());
+        multiAssert(nulls, Arrays.asList(null, 1L, null, 3L));
+        Assertions.assertThrows(CallerException.class, () -> Caller.threadedDefaultResolve.setCallLimit(5)
+                .resolveStream(IntStream.range(0, 4).boxed(), i -> RecursionBuilder.factorialCaller(50), 2, true)
+                .count());
+    }
+
     @Test
     public void crazyRecursionTest1() {
 
@@ -1,13 +1,27 @@
 package lt.lb.caller.test;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import lt.lb.caller.Caller;
+import lt.lb.caller.CallerBatch;
 import lt.lb.caller.CallerBuilder;
+import lt.lb.caller.CallerListener;
+import lt.lb.caller.CallerNode;
+import lt.lb.caller.CallerResolve;
+import lt.lb.caller.util.CastList;
+import lt.lb.caller.util.CheckedFunction;
+import lt.lb.caller.util.SerializableCheckedBiFunction;
+import lt.lb.caller.util.SerializableCheckedFunction;
 
 /**
  *
@@ -52,6 +66,21 @@ public class RecursionBuilder {
 
     }
 
+    public static Caller<BigInteger> fibb2CallerBinary(long seq) {
+        if (seq == 0) {
+            return Caller.ofResult(BigInteger.ZERO);
+        }
+        if (seq == 1) {
+            return Caller.ofResult(BigInteger.ONE);
+        }
+
+        return Caller.ofBinaryResult(
+                Caller.ofCallable(() -> fibb2CallerBinary(seq - 1)),
+                Caller.ofCallable(() -> fibb2CallerBinary(seq - 2)),
+                (a, b) -> a.add(b)
+        );
+    }
+
     public static BigInteger ackermann(BigInteger m, BigInteger n) {
         if (m.equals(BigInteger.ZERO)) {
             return n.add(BigInteger.ONE);
@@ -312,6 +341,143 @@ public class RecursionBuilder {
         }
     }
 
+    public static Caller<BigInteger> factorialCallerUnary(int n) {
+        if (n == 0) {
+            return Caller.ofResult(BigInteger.ONE);
+        } else {
+            BigInteger val = BigInteger.valueOf(n);
+            return Caller.ofUnaryResult(Caller.ofCallable(() -> factorialCallerUnary(n - 1)), val::multiply);
+        }
+    }
+
+    public static Caller<BigInteger> factorialCallerSerializable(int n) {
+        if (n == 0) {
+            return Caller.ofResult(BigInteger.ONE);
+        } else {
+            BigInteger val = BigInteger.valueOf(n);
+            SerializableCheckedFunction<CastList<BigInteger>, Caller<BigInteger>> next = args -> factorialCallerSerializable(n - 1);
+            SerializableCheckedFunction<BigInteger, BigInteger> multiply = val::multiply;
+            return Caller.ofUnaryResult(Caller.ofFunction(next), multiply);
+        }
+    }
+
+    /**
+     * Static, so that it is not copied by checkpoint.
+     */
+    static final AtomicLong factorialSumMemoCalls = new AtomicLong();
+
+    /**
+     * Sum of the same memoized factorial, which counts how many times it was
+     * computed in {@link #factorialSumMemoCalls}.
+     */
+    public static Caller<BigInteger> factorialSumCallerSerializable(int n) {
+        SerializableCheckedFunction<CastList<BigInteger>, Caller<BigInteger>> factorial = args -> {
+            factorialSumMemoCalls.incrementAndGet();
+            return factorialCallerSerializable(n);
+        };
+        Caller<BigInteger> memo = Caller.ofFunctionMemo(factorial);
+        SerializableCheckedBiFunction<BigInteger, BigInteger, BigInteger> add = BigInteger::add;
+        return Caller.ofBinaryResult(memo, memo, add);
+    }
+
+    /**
+     * Static, so that it is not copied by spill.
+     */
+    static final AtomicLong swingMarkerWrites = new AtomicLong();
+
+    /**
+     * Carried by every {@link #swingCaller} frame, counts how many times it was
+     * serialized in {@link #swingMarkerWrites}. Written once per stream, so
+     * once per spilled segment.
+     */
+    static class SwingMarker implements Serializable {
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            swingMarkerWrites.incrementAndGet();
+            out.defaultWriteObject();
+        }
+    }
+
+    /**
+     * Chain of {@code depth} levels, which ends with {@code swings} chains of
+     * {@code swingDepth} levels resolved one after another, so stack depth
+     * goes back and forth by {@code swingDepth}. Result is {@code swings}.
+     */
+    public static Caller<Long> swingCaller(int depth, int swings, int swingDepth, SwingMarker marker) {
+        if (depth > 0) {
+            SerializableCheckedFunction<CastList<Long>, Caller<Long>> next = args -> swingCaller(depth - 1, swings, swingDepth, marker);
+            SerializableCheckedFunction<Long, Long> same = r -> r;
+            return Caller.ofUnaryResult(Caller.ofFunction(next), same);
+        }
+        if (swings == 0) {
+            return Caller.ofResult(1L);
+        }
+        CallerBuilder<Long> builder = new CallerBuilder<>(swings);
+        for (int i = 0; i < swings; i++) {
+            builder.with(swingCaller(swingDepth, 0, 0, marker));
+        }
+        SerializableCheckedFunction<CastList<Long>, Long> count = args -> (long) args.parameterCount;
+        return builder.toResultCall(count);
+    }
+
+    /**
+     * Memoized caller, which needs its own value at given recursion depth.
+     */
+    public static Caller<Long> selfDependentMemo(int depth) {
+        AtomicReference<Caller<Long>> self = new AtomicReference<>();
+        SerializableCheckedFunction<CastList<Long>, Caller<Long>> deep = args -> selfDependent(depth, self.get());
+        Caller<Long> memo = new CallerBuilder<Long>().with(Caller.ofResult(0L)).toCallMemo(deep);
+        self.set(memo);
+        return memo;
+    }
+
+    private static Caller<Long> selfDependent(int depth, Caller<Long> memo) {
+        SerializableCheckedFunction<Long, Long> inc = x -> x + 1;
+        if (depth == 0) {
+            return Caller.ofUnaryResult(memo, inc);
+        }
+        SerializableCheckedFunction<CastList<Long>, Caller<Long>> next = args -> selfDependent(depth - 1, memo);
+        return Caller.ofUnaryResult(Caller.ofFunction(next), inc);
+    }
+
+    /**
+     * @return name of resolver loop method, which invokes user function of
+     * this caller
+     */
+    public static Caller<String> resolverLoopCaller() {
+        return Caller.ofCallableResult(() -> Arrays.stream(Thread.currentThread().getStackTrace())
+                .map(StackTraceElement::getMethodName)
+                .filter(m -> m.startsWith("resolve") && m.endsWith("Loop"))
+                .findFirst().orElse(null));
+    }
+
+    /**
+     * Result caller, which counts how many times it was computed.
+     */
+    public static <T> Caller<T> countedResultCaller(AtomicInteger count, T value) {
+        return Caller.ofCallableResult(() -> {
+            count.incrementAndGet();
+            return value;
+        });
+    }
+
+    /**
+     * Sum of the same caller used twice.
+     */
+    public static Caller<Long> twiceCaller(Caller<Long> caller) {
+        return Caller.ofBinaryResult(caller, caller, Long::sum);
+    }
+
+    /**
+     * Node of given inputs, which counts how many times it was computed.
+     */
+    public static CallerNode<Long> countedNode(AtomicInteger count, CheckedFunction<CastList<Long>, Long> function, Caller<Long>... inputs) {
+        return new CallerBuilder<Long>().with(inputs).toNodeResult(args -> {
+            count.incrementAndGet();
+            return function.apply(args);
+        });
+    }
+
     public static Integer binarySearch(Integer[] data, Integer toFind, Integer start, Integer end) {
         int mid = start + (end - start) / 2;
 
@@ -340,7 +506,51 @@ public class RecursionBuilder {
         }
     }
 
-    
+    public static long wideSum(int layers, int children, long value) {
+        if (layers <= 0) {
+            return value;
+        }
+        long sum = value;
+        for (int i = 0; i < children; i++) {
+            sum += wideSum(layers - 1, children, value * children + i);
+        }
+        return sum;
+    }
+
+    public static Caller<Long> wideSumCaller(int layers, int children, long value) {
+        if (layers <= 0) {
+            return Caller.ofResult(value);
+        }
+        return new CallerBuilder<Long>()
+                .withGenerated(children, i -> wideSumCaller(layers - 1, children, value * children + i))
+                .toFoldResultCall(value, (acc, child) -> acc + child);
+    }
+
+    public static long gridPaths(int i, int j) {
+        if (i == 0 || j == 0) {
+            return 1;
+        }
+        return gridPaths(i - 1, j) + gridPaths(i, j - 1);
+    }
+
+    public static Caller<Long> gridPathsCaller(int i, int j, AtomicLong calls) {
+        return Caller.ofKeyed(Arrays.asList(i, j), () -> {
+            calls.incrementAndGet();
+            if (i == 0 || j == 0) {
+                return Caller.ofResult(1L);
+            }
+            SerializableCheckedBiFunction<Long, Long, Long> sum = Long::sum;
+            return Caller.ofBinaryResult(gridPathsCaller(i - 1, j, calls), gridPathsCaller(i, j - 1, calls), sum);
+        });
+    }
+
+    /**
+     * Resolve {@link #gridPathsCaller} with given listener.
+     */
+    public static long gridPathsListened(CallerResolve resolve, CallerListener listener, int n, AtomicLong calls) {
+        return resolve.setListener(listener).resolveValue(gridPathsCaller(n, n, calls));
+    }
+
     static long min = 1L;
     static long max = 1000000L;
     public static Long recSum(long number) {
@@ -376,4 +586,46 @@ public class RecursionBuilder {
 
         return new CallerBuilder<Long>().with(n4).toResultCallMemo(a -> number + a._0);
     }
+
+    /**
+     * Sum of binary tree keys, where every key value is loaded through a
+     * batch.
+     */
+    public static Caller<Long> batchTreeCaller(CallerBatch<Long, Long> batch, long key, long size) {
+        return new CallerBuilder<Long>(1).with(batch.get(key)).toCall(args -> {
+            long value = args._0;
+            List<Caller<Long>> children = new ArrayList<>();
+            for (long child = key * 2 + 1; child <= key * 2 + 2 && child < size; child++) {
+                children.add(batchTreeCaller(batch, child, size));
+            }
+            return new CallerBuilder<Long>().with(children).toResultCall(a -> {
+                long sum = value;
+                for (long v : a) {
+                    sum += v;
+                }
+                return sum;
+            });
+        });
+    }
+
+    /**
+     * Lazy linear search for the target, first found value short-circuits the
+     * rest.
+     */
+    public static Caller<Long> lazyFindCaller(long i, long target) {
+        return new CallerBuilder<Long>(2)
+                .withRes(i == target ? i : null)
+                .with(() -> lazyFindCaller(i + 1, target))
+                .toLazyCall(deps -> Caller.ofUnary(deps._0, found -> found != null ? Caller.ofResult(found) : deps._1));
+    }
+
+    /**
+     * Never ending recursion, which counts its steps.
+     */
+    public static Caller<Long> spinCaller(AtomicLong steps) {
+        return Caller.ofCallable(() -> {
+            steps.incrementAndGet();
+            return spinCaller(steps);
+        });
+    }
 }
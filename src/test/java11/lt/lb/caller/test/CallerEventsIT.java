@@ -0,0 +1,100 @@
+package lt.lb.caller.test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import lt.lb.caller.CallerException;
+import static lt.lb.caller.test.CallerTest.multiAssert;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Flight recorder events, which are only present in multi-release jar, so
+ * this runs against packaged artifact.
+ *
+ * @author laim0nas100
+ */
+public class CallerEventsIT {
+
+    private static final String[] EVENTS = {
+        "lt.lb.caller.Resolution",
+        "lt.lb.caller.Fork",
+        "lt.lb.caller.MemoWait",
+        "lt.lb.caller.LimitReached"
+    };
+
+    private static void resolveAll() {
+        multiAssert(RecursionBuilder.fibb2(15), RecursionBuilder.fibb2CallerBinary(15).resolveThreaded(), RecursionBuilder.fibb2CallerBinary(15).resolve());
+        multiAssert(RecursionBuilder.factorial(20), RecursionBuilder.factorialCaller(20).resolve());
+        assertThrows(CallerException.class, () -> {
+            RecursionBuilder.factorialCaller(50).withArguments().setCallLimit(5).resolveValue();
+        });
+    }
+
+    private static List<RecordedEvent> record(boolean enabled) throws IOException {
+        Path file = Files.createTempFile("caller", ".jfr");
+        try {
+            try (Recording recording = new Recording()) {
+                for (String event : EVENTS) {
+                    if (enabled) {
+                        recording.enable(event).withoutThreshold();
+                    } else {
+                        recording.disable(event);
+                    }
+                }
+                recording.start();
+                resolveAll();
+                recording.stop();
+                recording.dump(file);
+            }
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> e.getEventType().getName().startsWith("lt.lb.caller."))
+                    .collect(Collectors.toList());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(e -> e.getEventType().getName().equals(name))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void eventsTest() throws IOException {
+        List<RecordedEvent> events = record(true);
+
+        List<RecordedEvent> resolutions = named(events, "lt.lb.caller.Resolution");
+        multiAssert(resolutions.size(), 4);
+        for (RecordedEvent e : resolutions) {
+            assertTrue(e.getLong("calls") > 0);
+            assertTrue(e.getInt("maxDepth") > 0);
+        }
+
+        List<RecordedEvent> forks = named(events, "lt.lb.caller.Fork");
+        assertTrue(!forks.isEmpty());
+        for (RecordedEvent e : forks) {
+            multiAssert(e.getInt("fanOut"), 2);
+        }
+
+        List<RecordedEvent> limits = named(events, "lt.lb.caller.LimitReached");
+        multiAssert(limits.size(), 1);
+        multiAssert(limits.get(0).getString("limit"), "call");
+        multiAssert(limits.get(0).getLong("value"), 5L);
+    }
+
+    @Test
+    public void eventsDisabledTest() throws IOException {
+        multiAssert(record(false).size(), 0);
+        // no recording at all
+        resolveAll();
+    }
+
+}